@@ -1,8 +1,10 @@
 package linksharing.perf.master;
 
-import linksharing.perf.master.workers.Metric;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import linksharing.perf.master.workers.LatencySnapshot;
 import linksharing.perf.master.workers.Worker;
 import lombok.Data;
+import org.HdrHistogram.Histogram;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -21,7 +23,7 @@ public class MasterService {
 
     private final Object o = new Object();
 
-    private final ConcurrentLinkedQueue<Metric> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<LatencySnapshot> queue = new ConcurrentLinkedQueue<>();
 
     private final StatsPart publicStats = new StatsPart();
     private final StatsPart backofficeStats = new StatsPart();
@@ -31,6 +33,11 @@ public class MasterService {
     }
 
     public void start(TestConfig config) {
+        synchronized (o) {
+            long now = System.currentTimeMillis();
+            publicStats.start(now);
+            backofficeStats.start(now);
+        }
         workers.values().forEach(worker -> {
             try {
                 rest.postForEntity(worker.getControlUrl() + "/start", config, String.class);
@@ -54,32 +61,33 @@ public class MasterService {
             return;
         }
 
-        var receivedMetrics = new ArrayList<Metric>();
+        var received = new ArrayList<LatencySnapshot>();
         while (!queue.isEmpty()) {
-            var m = queue.poll();
-            if (m != null) {
-                receivedMetrics.add(m);
+            var snapshot = queue.poll();
+            if (snapshot != null) {
+                received.add(snapshot);
             }
         }
 
-        var backofficeMetrics = receivedMetrics.stream()
-                .filter(m -> !m.getRequestPath().contains("public"))
+        var backofficeSnapshots = received.stream()
+                .filter(snapshot -> !snapshot.isPublicApi())
                 .toList();
-        var publicMetrics = receivedMetrics.stream()
-                .filter(m -> m.getRequestPath().contains("public"))
+        var publicSnapshots = received.stream()
+                .filter(LatencySnapshot::isPublicApi)
                 .toList();
 
         synchronized (o) {
-            publicStats.updateWithMetrics(publicMetrics);
-            backofficeStats.updateWithMetrics(backofficeMetrics);
+            long now = System.currentTimeMillis();
+            publicStats.updateWithSnapshots(publicSnapshots, now);
+            backofficeStats.updateWithSnapshots(backofficeSnapshots, now);
         }
     }
 
-    public void onUpdateFromWorker(List<Metric> metrics) {
-        if (metrics.isEmpty()) {
+    public void onUpdateFromWorker(List<LatencySnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
             return;
         }
-        queue.addAll(metrics);
+        queue.addAll(snapshots);
     }
 
     public void stop() {
@@ -104,44 +112,101 @@ public class MasterService {
         });
     }
 
+    /**
+     * Stats of one group of requests. Run the same test against the server in both thread modes
+     * (spring.threads.virtual.enabled) and compare throughput and response time.
+     */
     @Data
     public static class StatsPart {
         private Integer averageResponseTime = null;
+        private ResponseTimes responseTimes = null;
+        private ResponseTimes correctedResponseTimes = null; // for coordinated omission, see TestConfig.expectedInterval
         private long requestsSent = 0;
         private long requestsFailed = 0;
+        private Double requestsPerSecond = null;
+
+        @JsonIgnore
+        private final Histogram rawHistogram = new Histogram(3); // in microseconds
+        @JsonIgnore
+        private final Histogram correctedHistogram = new Histogram(3);
+        @JsonIgnore
+        private Long startedAt = null;
+
+        public void start(long now) {
+            reset();
+            startedAt = now;
+        }
 
-        public void updateWithMetrics(List<Metric> metrics) {
-            if (metrics.isEmpty()) {
+        public void updateWithSnapshots(List<LatencySnapshot> snapshots, long now) {
+            if (snapshots.isEmpty()) {
                 return;
             }
-            requestsSent += metrics.size();
-            requestsFailed += metrics.stream().filter(metric -> metric.getErrorCode() > 0).count();
-            double nextAverageResponseTime = metrics.stream()
-                    .mapToLong(Metric::getResponseTime)
-                    .filter(time -> time > 0)
-                    .average()
-                    .orElse(0);
-            if (nextAverageResponseTime == 0) {
-                return;
+            if (startedAt == null) {
+                startedAt = now;
+            }
+            for (var snapshot : snapshots) {
+                var raw = snapshot.decodeHistogram();
+                requestsSent += raw.getTotalCount();
+                requestsFailed += snapshot.getErrors();
+                if (!snapshot.isRampUp()) {
+                    rawHistogram.add(raw);
+                    correctedHistogram.add(snapshot.decodeCorrectedHistogram());
+                }
+            }
+            if (rawHistogram.getTotalCount() > 0) {
+                averageResponseTime = (int) (rawHistogram.getMean() / 1000);
+                responseTimes = ResponseTimes.of(rawHistogram);
+                correctedResponseTimes = ResponseTimes.of(correctedHistogram);
             }
-            if (averageResponseTime != null) {
-                nextAverageResponseTime = ((double) averageResponseTime + nextAverageResponseTime) / 2;
+            long elapsed = now - startedAt;
+            if (elapsed > 0) {
+                requestsPerSecond = requestsSent * 1000.0 / elapsed;
             }
-            averageResponseTime = (int) nextAverageResponseTime;
         }
 
+        /**
+         * A copy of the reported values, the histograms are not copied.
+         */
         public StatsPart clone() {
             var stats = new StatsPart();
             stats.averageResponseTime = averageResponseTime;
+            stats.responseTimes = responseTimes;
+            stats.correctedResponseTimes = correctedResponseTimes;
             stats.requestsSent = requestsSent;
             stats.requestsFailed = requestsFailed;
+            stats.requestsPerSecond = requestsPerSecond;
+            stats.startedAt = startedAt;
             return stats;
         }
 
         public void reset() {
             averageResponseTime = null;
+            responseTimes = null;
+            correctedResponseTimes = null;
             requestsSent = 0;
             requestsFailed = 0;
+            requestsPerSecond = null;
+            rawHistogram.reset();
+            correctedHistogram.reset();
+            startedAt = null;
+        }
+    }
+
+    /**
+     * Percentiles of a response time histogram, in milliseconds.
+     */
+    public record ResponseTimes(double p50, double p95, double p99, double max) {
+
+        static ResponseTimes of(Histogram histogram) {
+            return new ResponseTimes(
+                    toMillis(histogram.getValueAtPercentile(50)),
+                    toMillis(histogram.getValueAtPercentile(95)),
+                    toMillis(histogram.getValueAtPercentile(99)),
+                    toMillis(histogram.getMaxValue()));
+        }
+
+        private static double toMillis(long micros) {
+            return micros / 1000.0;
         }
     }
 }
@@ -8,4 +8,9 @@ public class TestConfig {
     private long duration; // in seconds
     private int numOfUsers; // for each worker node
     private long rampUpTime; // in seconds
+    private String clientEngine = "REST_TEMPLATE"; // or HTTP_CLIENT, see the worker's ClientEngine
+    private boolean virtualThreads; // REST_TEMPLATE users on virtual threads
+    // in milliseconds, the time between two requests of one user to the same endpoint (a whole cycle for those
+    // sent once per cycle), 0 reports raw response times only
+    private long expectedInterval;
 }
@@ -0,0 +1,39 @@
+package linksharing.perf.master.workers;
+
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+
+/**
+ * The response times of one endpoint over one send interval of a worker, see the worker's LatencyRecorder.
+ */
+@Data
+public class LatencySnapshot {
+    private String endpoint;
+    private boolean publicApi;
+    private boolean rampUp;
+    private long startTime; // epoch millis
+    private long endTime;
+    private long errors;
+    private String histogram; // base64 of the compressed HdrHistogram, in microseconds
+    private String correctedHistogram; // corrected for coordinated omission
+
+    public Histogram decodeHistogram() {
+        return decode(histogram);
+    }
+
+    public Histogram decodeCorrectedHistogram() {
+        return decode(correctedHistogram);
+    }
+
+    private Histogram decode(String encoded) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed histogram of " + endpoint, e);
+        }
+    }
+}
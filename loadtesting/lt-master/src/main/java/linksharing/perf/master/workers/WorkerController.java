@@ -48,8 +48,8 @@ public class WorkerController {
 
     // called by workers themselves
     @PostMapping("/api/workers/metrics")
-    public ResponseEntity<?> addMetrics(@RequestBody List<Metric> metrics) {
-        service.onUpdateFromWorker(metrics);
+    public ResponseEntity<?> addMetrics(@RequestBody List<LatencySnapshot> snapshots) {
+        service.onUpdateFromWorker(snapshots);
         return ResponseEntity.ok("ok");
     }
 }
@@ -7,8 +7,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @SpringBootApplication
 public class Application {
@@ -17,12 +18,6 @@ public class Application {
         SpringApplication.run(Application.class, args);
     }
 
-    @Bean
-    @Qualifier("metricsQueue")
-    public Queue<Metric> metricsQueue() {
-        return new ConcurrentLinkedQueue<>();
-    }
-
     @Bean
     @Qualifier("timedRestTemplate")
     public RestTemplate timedRestTemplate(TimingInterceptor timingInterceptor) {
@@ -38,4 +33,19 @@ public class Application {
         return new RestTemplate();
     }
 
+    /**
+     * Shared by all {@link AsyncVirtualUser}s. Keep-alive connections are pooled by the client, the executor
+     * only runs response callbacks, so it does not grow with the number of users.
+     */
+    @Bean(destroyMethod = "close")
+    public HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                // the target is plain http, skip the h2c upgrade attempt on every new connection
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                        Thread.ofPlatform().daemon().name("http-client-", 0).factory()))
+                .build();
+    }
+
 }
@@ -0,0 +1,242 @@
+package linksharing.perf.worker;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.serpro69.kfaker.Faker;
+import jakarta.annotation.PostConstruct;
+import linksharing.perf.worker.VirtualUser.InfoDto;
+import linksharing.perf.worker.VirtualUser.LinkDto;
+import linksharing.perf.worker.VirtualUser.UserDto;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Runs the same cycle as {@link VirtualUser}, but as a chain of async requests on the shared {@link HttpClient}.
+ * No thread is held while a request is in flight, so a worker can drive tens of thousands of users.
+ * <p>
+ * Unlike {@link VirtualUser} a failed request does not end the user: the cycle starts over after a second.
+ */
+@Component
+@Scope("prototype")
+public class AsyncVirtualUser {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncVirtualUser.class);
+
+    private static final Faker faker = new Faker();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final HttpClient http;
+    private final ObjectMapper json;
+    private final LatencyRecorder latencies;
+    private final Random random = new Random();
+    // encodes like RestTemplate does for a URL string
+    private final DefaultUriBuilderFactory uris = new DefaultUriBuilderFactory();
+    @Setter
+    private String targetBaseUrl;
+    private String email;
+    private volatile boolean stopped;
+
+    public AsyncVirtualUser(HttpClient http, ObjectMapper json, LatencyRecorder latencies) {
+        this.http = http;
+        this.json = json;
+        this.latencies = latencies;
+        this.uris.setEncodingMode(DefaultUriBuilderFactory.EncodingMode.URI_COMPONENT);
+    }
+
+    @PostConstruct
+    public void init() {
+        email = faker.getInternet().email();
+    }
+
+    public void start() {
+        nextCycle();
+    }
+
+    /**
+     * Requests in flight complete, no new ones are sent.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    private void nextCycle() {
+        if (stopped) {
+            return;
+        }
+        runCycle().whenComplete((ignored, e) -> {
+            if (e == null) {
+                nextCycle();
+            } else {
+                log.debug("Cycle of {} failed, starting over", email, e);
+                CompletableFuture.runAsync(this::nextCycle,
+                        CompletableFuture.delayedExecutor(RETRY_DELAY_MS, TimeUnit.MILLISECONDS));
+            }
+        });
+    }
+
+    private CompletableFuture<Void> runCycle() {
+        return isUserExists()
+                .thenCompose(exists -> exists ? done() : step(this::registerUser))
+                .thenCompose(v -> step(() -> updateUser(new UserDto(faker.getName().firstName(), faker.getName().lastName()))))
+                .thenCompose(v -> step(this::updateProfilePicture))
+                .thenCompose(v -> step(this::removeAllLinks))
+                .thenCompose(v -> repeat(rndNum(5, 8),
+                        () -> addLink(new LinkDto(faker.getName().name(), faker.getCommerce().productName()))))
+                .thenCompose(v -> repeat(rndNum(9, 11), () -> fetchPublicProfile().thenApply(profile -> null)))
+                .thenCompose(v -> step(() -> fetchPublicProfile().thenCompose(profile -> clickRandomLink(profile.links()))));
+    }
+
+    private CompletableFuture<Boolean> isUserExists() {
+        var request = request("/api/user/" + email + "/exists").GET().build();
+        return send(request, false).thenApply(response -> {
+            if (response.statusCode() == 404) {
+                return false;
+            }
+            checkStatus(request, response);
+            return true;
+        });
+    }
+
+    private CompletableFuture<Void> registerUser() {
+        return call(request("/api/user/register")
+                .header("Content-Type", "text/plain")
+                .POST(BodyPublishers.ofString(email))
+                .build(), true);
+    }
+
+    private CompletableFuture<Void> updateUser(UserDto userDto) {
+        return call(request("/api/user/" + email)
+                .header("Content-Type", "application/json")
+                .PUT(BodyPublishers.ofByteArray(toJson(userDto)))
+                .build(), true);
+    }
+
+    private CompletableFuture<Void> updateProfilePicture() {
+        byte[] imageData = new byte[130 * 1024];
+        random.nextBytes(imageData);
+        String boundary = "lt-" + Long.toHexString(random.nextLong());
+        byte[] head = ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"img.jpg\"\r\n" +
+                "Content-Type: image/jpeg\r\n\r\n").getBytes(US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+
+        return call(request("/api/user/" + email + "/pic")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(BodyPublishers.ofByteArrays(List.of(head, imageData, tail)))
+                .build(), true);
+    }
+
+    private CompletableFuture<Void> addLink(LinkDto linkDto) {
+        return call(request("/api/user/" + email + "/links")
+                .header("Content-Type", "application/json")
+                .POST(BodyPublishers.ofByteArray(toJson(linkDto)))
+                .build(), true);
+    }
+
+    private CompletableFuture<Void> removeAllLinks() {
+        return call(request("/api/user/" + email + "/links").DELETE().build(), false);
+    }
+
+    private CompletableFuture<InfoDto> fetchPublicProfile() {
+        var request = request("/api/public/" + email).GET().build();
+        return send(request, true).thenApply(response -> {
+            checkStatus(request, response);
+            try {
+                return json.readValue(response.body(), InfoDto.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> clickRandomLink(List<LinkDto> links) {
+        if (links.isEmpty()) {
+            return done();
+        }
+        LinkDto link = links.get(random.nextInt(links.size()));
+        return call(request("/api/user/" + email + "/links/" + link.url())
+                .POST(BodyPublishers.noBody())
+                .build(), true);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        URI uri = uris.expand(targetBaseUrl + path);
+        return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+    }
+
+    private CompletableFuture<Void> call(HttpRequest request, boolean timed) {
+        return send(request, timed).thenAccept(response -> checkStatus(request, response));
+    }
+
+    /**
+     * Timed requests are recorded like {@link TimingInterceptor} does for the RestTemplate engine.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest request, boolean timed) {
+        long start = System.nanoTime();
+        return http.sendAsync(request, BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (timed) {
+                long elapsed = System.nanoTime() - start;
+                latencies.record(Endpoint.of(request.method(), request.uri().getRawPath()), elapsed, response.statusCode());
+            }
+            return response;
+        });
+    }
+
+    private static void checkStatus(HttpRequest request, HttpResponse<?> response) {
+        if (response.statusCode() >= 400) {
+            throw new CompletionException(new IOException(
+                    request.method() + " " + request.uri() + " failed with " + response.statusCode()));
+        }
+    }
+
+    private CompletableFuture<Void> step(Supplier<CompletableFuture<Void>> call) {
+        return stopped ? done() : call.get();
+    }
+
+    private CompletableFuture<Void> repeat(int times, Supplier<CompletableFuture<Void>> call) {
+        CompletableFuture<Void> chain = done();
+        for (int i = 0; i < times; i++) {
+            chain = chain.thenCompose(v -> step(call));
+        }
+        return chain;
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return json.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CompletableFuture<Void> done() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    int rndNum(int min, int max) {
+        return random.nextInt(max - min) + min;
+    }
+}
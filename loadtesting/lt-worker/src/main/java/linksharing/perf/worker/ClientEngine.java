@@ -0,0 +1,12 @@
+package linksharing.perf.worker;
+
+public enum ClientEngine {
+    /**
+     * {@link VirtualUser}: blocking RestTemplate calls, one thread per virtual user.
+     */
+    REST_TEMPLATE,
+    /**
+     * {@link AsyncVirtualUser}: async calls on the shared JDK HttpClient, no thread is held between requests.
+     */
+    HTTP_CLIENT
+}
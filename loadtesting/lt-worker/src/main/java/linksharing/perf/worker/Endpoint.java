@@ -0,0 +1,56 @@
+package linksharing.perf.worker;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * The requests a virtual user sends, latencies are recorded per endpoint.
+ */
+public enum Endpoint {
+    USER_EXISTS(false),
+    REGISTER(false),
+    UPDATE_USER(false),
+    UPLOAD_PICTURE(false),
+    ADD_LINK(false),
+    DELETE_LINKS(false),
+    CLICK_LINK(false),
+    PUBLIC_PROFILE(true),
+    OTHER(false);
+
+    private final boolean publicApi;
+
+    Endpoint(boolean publicApi) {
+        this.publicApi = publicApi;
+    }
+
+    public boolean isPublicApi() {
+        return publicApi;
+    }
+
+    /**
+     * Matches on the raw path without building any string, it is called for every timed request.
+     */
+    public static Endpoint of(String method, String path) {
+        if (path.contains("/api/public/")) {
+            return PUBLIC_PROFILE;
+        }
+        if (path.endsWith("/api/user/register")) {
+            return REGISTER;
+        }
+        if (path.endsWith("/exists")) {
+            return USER_EXISTS;
+        }
+        if (path.endsWith("/pic")) {
+            return UPLOAD_PICTURE;
+        }
+        if (path.endsWith("/links")) {
+            return HttpMethod.DELETE.matches(method) ? DELETE_LINKS : ADD_LINK;
+        }
+        if (path.contains("/links/")) {
+            return CLICK_LINK;
+        }
+        if (path.contains("/api/user/") && HttpMethod.PUT.matches(method)) {
+            return UPDATE_USER;
+        }
+        return OTHER;
+    }
+}
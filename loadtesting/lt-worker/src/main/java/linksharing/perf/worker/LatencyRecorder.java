@@ -0,0 +1,129 @@
+package linksharing.perf.worker;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records response times into a histogram per {@link Endpoint}. Recording does not allocate, the histograms of
+ * the last interval are taken by {@link #snapshot(boolean)} and sent to the master in compressed form.
+ * <p>
+ * Every response time goes into a raw and a corrected histogram. A virtual user only sends its next request once
+ * the previous one completed, so while the server stalls the requests it would have sent are never measured
+ * (coordinated omission). With an expected interval set, the corrected histogram also gets the response times
+ * those missing requests would have seen, see {@link Recorder#recordValueWithExpectedInterval(long, long)}.
+ * <p>
+ * Values are in microseconds.
+ */
+@Component
+public class LatencyRecorder {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Endpoint, EndpointLatencies> endpoints = new EnumMap<>(Endpoint.class);
+    private volatile long expectedIntervalMicros;
+
+    public LatencyRecorder() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointLatencies());
+        }
+    }
+
+    /**
+     * The time between two requests of one virtual user to the same endpoint when the server keeps up, applied to
+     * every endpoint. A cycle sends requests to other endpoints in between, so this is the cycle time divided by the
+     * requests to the endpoint per cycle, not the spacing of consecutive requests. A smaller value fills the
+     * corrected histograms with requests that would never have been sent. Zero turns the correction off.
+     */
+    public void setExpectedInterval(Duration expectedInterval) {
+        expectedIntervalMicros = expectedInterval.toNanos() / 1000;
+    }
+
+    /**
+     * @param elapsedNanos from {@link System#nanoTime()}
+     * @param statusCode   a status >= 400 is counted as failed, its response time is still recorded
+     */
+    public void record(Endpoint endpoint, long elapsedNanos, int statusCode) {
+        var latencies = endpoints.get(endpoint);
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(elapsedNanos, 0));
+        latencies.raw.recordValue(micros);
+        latencies.corrected.recordValueWithExpectedInterval(micros, expectedIntervalMicros);
+        if (statusCode >= 400) {
+            latencies.errors.increment();
+        }
+    }
+
+    /**
+     * Takes the histograms recorded since the previous snapshot. Endpoints without requests are left out.
+     * Called by a single thread.
+     */
+    public List<LatencySnapshot> snapshot(boolean rampUp) {
+        var snapshots = new ArrayList<LatencySnapshot>();
+        endpoints.forEach((endpoint, latencies) -> {
+            var histogram = latencies.nextInterval();
+            var corrected = latencies.nextCorrectedInterval();
+            long errors = latencies.errors.sumThenReset();
+            if (histogram.getTotalCount() == 0 && errors == 0) {
+                return;
+            }
+            var snapshot = new LatencySnapshot();
+            snapshot.setEndpoint(endpoint);
+            snapshot.setPublicApi(endpoint.isPublicApi());
+            snapshot.setRampUp(rampUp);
+            snapshot.setStartTime(histogram.getStartTimeStamp());
+            snapshot.setEndTime(histogram.getEndTimeStamp());
+            snapshot.setErrors(errors);
+            snapshot.setHistogram(encode(histogram));
+            snapshot.setCorrectedHistogram(encode(corrected));
+            snapshots.add(snapshot);
+        });
+        return snapshots;
+    }
+
+    /**
+     * Drops everything recorded so far.
+     */
+    public void reset() {
+        endpoints.values().forEach(latencies -> {
+            latencies.nextInterval();
+            latencies.nextCorrectedInterval();
+            latencies.errors.reset();
+        });
+    }
+
+    private static String encode(Histogram histogram) {
+        var buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static class EndpointLatencies {
+        final Recorder raw = new Recorder(SIGNIFICANT_DIGITS);
+        final Recorder corrected = new Recorder(SIGNIFICANT_DIGITS);
+        final LongAdder errors = new LongAdder();
+        // swapped with the recorders' active histograms on every interval
+        Histogram interval;
+        Histogram correctedInterval;
+
+        Histogram nextInterval() {
+            interval = raw.getIntervalHistogram(interval);
+            return interval;
+        }
+
+        Histogram nextCorrectedInterval() {
+            correctedInterval = corrected.getIntervalHistogram(correctedInterval);
+            return correctedInterval;
+        }
+    }
+}
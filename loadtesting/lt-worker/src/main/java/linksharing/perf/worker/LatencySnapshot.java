@@ -0,0 +1,18 @@
+package linksharing.perf.worker;
+
+import lombok.Data;
+
+/**
+ * The response times of one endpoint over one send interval.
+ */
+@Data
+public class LatencySnapshot {
+    private Endpoint endpoint;
+    private boolean publicApi;
+    private boolean rampUp; // response times are not counted while ramping up, only the requests
+    private long startTime; // epoch millis
+    private long endTime;
+    private long errors;
+    private String histogram; // base64 of the compressed HdrHistogram, in microseconds
+    private String correctedHistogram; // same as histogram when no expected interval is set
+}
@@ -8,4 +8,9 @@ public class TestConfig {
     private int duration; // in seconds
     private int numOfUsers; // for each worker node
     private int rampUpTime; // in seconds
+    private ClientEngine clientEngine = ClientEngine.REST_TEMPLATE;
+    private boolean virtualThreads; // runs REST_TEMPLATE users on virtual threads instead of a platform thread each
+    // in milliseconds, the per-endpoint request period of one user, not the spacing of its requests,
+    // see LatencyRecorder.setExpectedInterval
+    private long expectedInterval;
 }
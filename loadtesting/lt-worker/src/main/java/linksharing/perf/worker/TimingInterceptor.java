@@ -1,6 +1,5 @@
 package linksharing.perf.worker;
 
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
@@ -8,24 +7,23 @@ import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.util.Queue;
 
 @Component
 public class TimingInterceptor implements ClientHttpRequestInterceptor {
 
-    private final Queue<Metric> metricsQueue;
+    private final LatencyRecorder latencies;
 
-    public TimingInterceptor(@Qualifier("metricsQueue") Queue<Metric> metricsQueue) {
-        this.metricsQueue = metricsQueue;
+    public TimingInterceptor(LatencyRecorder latencies) {
+        this.latencies = latencies;
     }
 
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         ClientHttpResponse response = execution.execute(request, body);
-        long elapsed = System.currentTimeMillis() - start;
-        int errorCode = response.getStatusCode().isError() ? response.getStatusCode().value() : -1;
-        metricsQueue.add(new Metric(request.getURI().toString(), elapsed, errorCode));
+        long elapsed = System.nanoTime() - start;
+        var endpoint = Endpoint.of(request.getMethod().name(), request.getURI().getRawPath());
+        latencies.record(endpoint, elapsed, response.getStatusCode().value());
         return response;
     }
 }
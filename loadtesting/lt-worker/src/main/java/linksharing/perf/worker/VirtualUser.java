@@ -14,6 +14,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
@@ -47,6 +48,17 @@ public class VirtualUser implements Runnable {
     // todo: what happens if an exception is thrown inside run()? (e.g. 404 not found)
     @Override
     public void run() {
+        try {
+            runCycles();
+        } catch (RestClientException e) {
+            // a request interrupted by WorkerService.stop, anything else still ends the user with the exception
+            if (!isInterrupted()) {
+                throw e;
+            }
+        }
+    }
+
+    private void runCycles() {
         while (!isInterrupted()) {
             if (!isUserExists(email)) {
                 registerUser(email);
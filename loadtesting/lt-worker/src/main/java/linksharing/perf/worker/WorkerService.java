@@ -2,7 +2,6 @@ package linksharing.perf.worker;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpEntity;
@@ -11,12 +10,14 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -25,10 +26,13 @@ public class WorkerService {
 
     private static final Logger log = LoggerFactory.getLogger(WorkerService.class);
 
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
     private final RestTemplate rest;
     private final AtomicReference<Status> statusRef = new AtomicReference<>(Status.READY);
-    private final Queue<Metric> metricsQueue;
+    private final LatencyRecorder latencies;
     private final ApplicationContext context;
+    private final Queue<AsyncVirtualUser> asyncUsers = new ConcurrentLinkedQueue<>();
 
     @Value("${master.host}")
     private String masterHost;
@@ -40,17 +44,30 @@ public class WorkerService {
     private Timer stopTimer;
     private Timer sendMetricsTimer;
 
-    public WorkerService(RestTemplate rest, ApplicationContext context, @Qualifier("metricsQueue") Queue<Metric> metricsQueue) {
+    public WorkerService(RestTemplate rest, ApplicationContext context, LatencyRecorder latencies) {
         this.rest = rest;
         this.context = context;
-        this.metricsQueue = metricsQueue;
+        this.latencies = latencies;
     }
 
     public void start(TestConfig config) {
         log.info("Staring load testing job");
         statusRef.set(Status.RAMPING_UP);
 
-        executor = Executors.newFixedThreadPool(config.getNumOfUsers() + 1);
+        boolean async = config.getClientEngine() == ClientEngine.HTTP_CLIENT;
+        log.info("Using the {} client engine{}", config.getClientEngine(),
+                !async && config.isVirtualThreads() ? " on virtual threads" : "");
+        // the async engine holds no thread per user
+        if (async) {
+            executor = null;
+        } else if (config.isVirtualThreads()) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            executor = Executors.newFixedThreadPool(config.getNumOfUsers() + 1);
+        }
+        asyncUsers.clear();
+        latencies.setExpectedInterval(Duration.ofMillis(config.getExpectedInterval()));
+        latencies.reset();
         rumpUpTimer = new Timer();
         stopTimer = new Timer();
         sendMetricsTimer = new Timer();
@@ -79,9 +96,20 @@ public class WorkerService {
                     return;
                 }
                 for (int i = 0; i < rampUpRate && !Thread.interrupted(); i++) {
-                    var vUser = context.getBean(VirtualUser.class);
-                    vUser.setTargetBaseUrl(config.getTargetUrl());
-                    executor.submit(vUser);
+                    if (async) {
+                        var vUser = context.getBean(AsyncVirtualUser.class);
+                        vUser.setTargetBaseUrl(config.getTargetUrl());
+                        asyncUsers.add(vUser);
+                        vUser.start();
+                    } else {
+                        var vUser = context.getBean(VirtualUser.class);
+                        vUser.setTargetBaseUrl(config.getTargetUrl());
+                        try {
+                            executor.submit(vUser);
+                        } catch (RejectedExecutionException e) {
+                            return; // stopped while ramping up
+                        }
+                    }
                 }
             }
         };
@@ -97,7 +125,7 @@ public class WorkerService {
                 if (statusRef.get() == Status.RUNNING) {
                     statusRef.set(Status.COMPLETED);
                 }
-                executor.shutdownNow();
+                stopUsers();
                 sendMetricsTimer.cancel();
             }
         };
@@ -106,20 +134,13 @@ public class WorkerService {
         var sendMetricsTask = new TimerTask() {
             @Override
             public void run() {
-                var metricsToSend = new ArrayList<Metric>();
-                while (!metricsQueue.isEmpty()) {
-                    var m = metricsQueue.poll();
-                    if (m == null) continue;
-                    metricsToSend.add(m);
-                }
-                if (metricsToSend.isEmpty()) return;
-                if (statusRef.get() == Status.RAMPING_UP) {
-                    metricsToSend.forEach(m -> m.setResponseTime(0)); // cut out response time from stats on ramp up
-                }
+                // response times are cut out from stats on ramp up
+                var snapshots = latencies.snapshot(statusRef.get() == Status.RAMPING_UP);
+                if (snapshots.isEmpty()) return;
 
                 var headers = new HttpHeaders();
                 headers.setContentType(MediaType.APPLICATION_JSON);
-                var request = new HttpEntity<>(metricsToSend, headers);
+                var request = new HttpEntity<>(snapshots, headers);
                 rest.postForEntity("http://" + masterHost + ":" + masterPort + "/api/workers/metrics", request, String.class);
             }
         };
@@ -128,7 +149,7 @@ public class WorkerService {
 
     public void stop() {
         statusRef.set(Status.READY);
-        executor.shutdownNow();
+        // no new users from the ramp up while the running ones are stopped
         if (rumpUpTimer != null) {
             rumpUpTimer.cancel();
         }
@@ -138,12 +159,37 @@ public class WorkerService {
         if (sendMetricsTimer != null) {
             sendMetricsTimer.cancel();
         }
+        stopUsers();
     }
 
     public void reset() {
         statusRef.set(Status.READY);
-        if (executor != null) executor.shutdownNow();
-        metricsQueue.clear();
+        stopUsers();
+        latencies.reset();
+    }
+
+    /**
+     * Interrupts every {@link VirtualUser} and waits for them to finish, blocking calls on virtual threads are
+     * interrupted right away.
+     */
+    private void stopUsers() {
+        asyncUsers.forEach(AsyncVirtualUser::stop);
+        asyncUsers.clear();
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Virtual users did not stop within {}", STOP_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isUsersTerminated() {
+        return executor == null || executor.isTerminated();
     }
 
     public String getStatus() {
@@ -0,0 +1,204 @@
+package linksharing.perf.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import linksharing.perf.worker.VirtualUser.InfoDto;
+import linksharing.perf.worker.VirtualUser.LinkDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncVirtualUserTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = mock(HttpClient.class);
+    private final List<Sent> sent = new CopyOnWriteArrayList<>();
+    private AsyncVirtualUser user;
+    private volatile Function<HttpRequest, CompletableFuture<HttpResponse<byte[]>>> server;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            HttpRequest request = invocation.getArgument(0);
+            sent.add(new Sent(request.method() + " " + request.uri().getRawPath(), System.nanoTime()));
+            return server.apply(request);
+        }).when(http).sendAsync(any(), any());
+
+        user = new AsyncVirtualUser(http, json, new LatencyRecorder());
+        user.setTargetBaseUrl("http://localhost:9000");
+        user.init();
+    }
+
+    @Test
+    void start_RunsCyclesUntilStopped() throws Exception {
+        var registered = new boolean[1];
+        var clicks = new int[1];
+        server = request -> {
+            String path = request.uri().getRawPath();
+            if (path.endsWith("/exists")) {
+                return respond(registered[0] ? 200 : 404);
+            }
+            if (path.endsWith("/register")) {
+                registered[0] = true;
+            } else if (path.startsWith("/api/public/")) {
+                return respond(200, profile());
+            } else if (path.endsWith("/links/example.com") && ++clicks[0] == 2) {
+                user.stop();
+            }
+            return respond(200);
+        };
+
+        user.start();
+        waitFor(() -> clicks[0] == 2);
+
+        List<String> requests = requests();
+        int secondCycle = requests.lastIndexOf("GET " + userPath() + "/exists");
+        List<String> first = requests.subList(0, secondCycle);
+        assertThat(first).startsWith("GET " + userPath() + "/exists", "POST /api/user/register",
+                "PUT " + userPath(), "POST " + userPath() + "/pic", "DELETE " + userPath() + "/links");
+        assertThat(first).endsWith("GET " + publicPath(), "POST " + userPath() + "/links/example.com");
+        assertThat(first).filteredOn(r -> r.equals("POST " + userPath() + "/links")).hasSizeBetween(5, 7);
+        assertThat(first).filteredOn(r -> r.equals("GET " + publicPath())).hasSizeBetween(10, 11);
+        assertThat(requests.subList(secondCycle, requests.size()))
+                .doesNotContain("POST /api/user/register")
+                .endsWith("POST " + userPath() + "/links/example.com");
+
+        assertNoMoreRequests(requests.size());
+    }
+
+    @Test
+    void start_WhenRequestFails_StartsOverAfterRetryDelay() throws Exception {
+        server = request -> {
+            if (request.uri().getRawPath().endsWith("/exists")) {
+                if (exists().size() == 1) {
+                    return CompletableFuture.failedFuture(new IOException("Connection refused"));
+                }
+                user.stop();
+            }
+            return respond(404);
+        };
+
+        user.start();
+        waitFor(() -> exists().size() == 2);
+
+        long retryDelay = exists().get(1).nanos() - exists().get(0).nanos();
+        assertThat(Duration.ofNanos(retryDelay)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+        assertNoMoreRequests(2);
+    }
+
+    @Test
+    void start_WhenRequestReturnsError_StartsOverWithoutFinishingCycle() throws Exception {
+        server = request -> {
+            String path = request.uri().getRawPath();
+            if (path.endsWith("/exists")) {
+                if (exists().size() == 2) {
+                    user.stop();
+                }
+                return respond(404);
+            }
+            return respond(path.endsWith("/register") ? 200 : 500);
+        };
+
+        user.start();
+        waitFor(() -> exists().size() == 2);
+
+        assertThat(requests()).containsExactly("GET " + userPath() + "/exists", "POST /api/user/register",
+                "PUT " + userPath(), "GET " + userPath() + "/exists");
+        long retryDelay = exists().get(1).nanos() - sent.get(2).nanos();
+        assertThat(Duration.ofNanos(retryDelay)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+        assertNoMoreRequests(4);
+    }
+
+    @Test
+    void stop_WhileRequestInFlight_SendsNoMoreRequests() throws Exception {
+        var inFlight = new CompletableFuture<HttpResponse<byte[]>>();
+        server = request -> inFlight;
+
+        user.start();
+        user.stop();
+        inFlight.complete(response(404, new byte[0]));
+
+        assertThat(requests()).containsExactly("GET " + userPath() + "/exists");
+        assertNoMoreRequests(1);
+    }
+
+    private void assertNoMoreRequests(int count) throws InterruptedException {
+        Thread.sleep(1500);
+        assertThat(sent).hasSize(count);
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private List<String> requests() {
+        return sent.stream().map(Sent::request).toList();
+    }
+
+    private List<Sent> exists() {
+        return sent.stream().filter(s -> s.request().endsWith("/exists")).toList();
+    }
+
+    private String userPath() {
+        return "/api/user/" + email();
+    }
+
+    private String publicPath() {
+        return "/api/public/" + email();
+    }
+
+    private String email() {
+        String path = sent.get(0).request();
+        return path.substring("GET /api/user/".length(), path.length() - "/exists".length());
+    }
+
+    private byte[] profile() {
+        try {
+            return json.writeValueAsBytes(new InfoDto(email(), "John", "Doe", null,
+                    List.of(new LinkDto("Example", "example.com"))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CompletableFuture<HttpResponse<byte[]>> respond(int status) {
+        return respond(status, new byte[0]);
+    }
+
+    private static CompletableFuture<HttpResponse<byte[]>> respond(int status, byte[] body) {
+        return CompletableFuture.completedFuture(response(status, body));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<byte[]> response(int status, byte[] body) {
+        HttpResponse<byte[]> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(body);
+        return response;
+    }
+
+    private record Sent(String request, long nanos) {
+    }
+}
@@ -0,0 +1,102 @@
+package linksharing.perf.worker;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyRecorderTest {
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    void snapshot_TakesIntervalPerEndpoint() throws Exception {
+        recorder.record(Endpoint.PUBLIC_PROFILE, millis(5), 200);
+        recorder.record(Endpoint.PUBLIC_PROFILE, millis(20), 200);
+        recorder.record(Endpoint.ADD_LINK, millis(7), 500);
+
+        var snapshots = recorder.snapshot(false);
+
+        assertThat(snapshots).extracting(LatencySnapshot::getEndpoint)
+                .containsExactly(Endpoint.ADD_LINK, Endpoint.PUBLIC_PROFILE);
+        var profile = snapshots.get(1);
+        assertThat(profile.isPublicApi()).isTrue();
+        assertThat(profile.getErrors()).isZero();
+        var histogram = decode(profile.getHistogram());
+        assertThat(histogram.getTotalCount()).isEqualTo(2);
+        // values are kept at 3 significant digits, the max is the top of the bucket holding 20ms
+        assertThat(histogram.valuesAreEquivalent(histogram.getMaxValue(), 20_000)).isTrue();
+        assertThat(snapshots.get(0).getErrors()).isEqualTo(1);
+
+        assertThat(recorder.snapshot(false)).isEmpty();
+    }
+
+    @Test
+    void snapshot_CorrectsForExpectedInterval() throws Exception {
+        recorder.setExpectedInterval(Duration.ofMillis(10));
+        recorder.record(Endpoint.PUBLIC_PROFILE, millis(100), 200);
+
+        var snapshot = recorder.snapshot(false).getFirst();
+
+        assertThat(decode(snapshot.getHistogram()).getTotalCount()).isEqualTo(1);
+        // the requests that would have been sent every 10ms while waiting: 100, 90, ..., 10ms
+        var corrected = decode(snapshot.getCorrectedHistogram());
+        assertThat(corrected.getTotalCount()).isEqualTo(10);
+        assertThat(corrected.valuesAreEquivalent(corrected.getValueAtPercentile(50), 50_000)).isTrue();
+    }
+
+    @Test
+    void snapshot_WhenOneEndpointStalls_CorrectsOnlyThatEndpoint() throws Exception {
+        // one cycle with each endpoint sent once, so the per-endpoint period is the whole cycle
+        recorder.setExpectedInterval(Duration.ofMillis(500));
+        recorder.record(Endpoint.USER_EXISTS, millis(5), 200);
+        recorder.record(Endpoint.UPDATE_USER, millis(8), 200);
+        recorder.record(Endpoint.PUBLIC_PROFILE, millis(2000), 200);
+        recorder.record(Endpoint.CLICK_LINK, millis(5), 200);
+
+        var snapshots = recorder.snapshot(false);
+
+        assertThat(snapshots).hasSize(4);
+        for (var snapshot : snapshots) {
+            long corrected = decode(snapshot.getCorrectedHistogram()).getTotalCount();
+            // 2000, 1500, 1000 and 500ms for the stalled endpoint, no extra samples for the others
+            assertThat(corrected).isEqualTo(snapshot.getEndpoint() == Endpoint.PUBLIC_PROFILE ? 4 : 1);
+        }
+    }
+
+    @Test
+    void snapshot_WithoutExpectedInterval_CorrectedIsRaw() throws Exception {
+        recorder.record(Endpoint.PUBLIC_PROFILE, millis(100), 200);
+
+        var snapshot = recorder.snapshot(false).getFirst();
+
+        var corrected = decode(snapshot.getCorrectedHistogram());
+        assertThat(corrected.getTotalCount()).isEqualTo(1);
+        assertThat(corrected.getMaxValue()).isEqualTo(decode(snapshot.getHistogram()).getMaxValue());
+    }
+
+    @Test
+    void endpointOf_MatchesRequestPaths() {
+        assertThat(Endpoint.of("GET", "/api/public/a@b.c")).isEqualTo(Endpoint.PUBLIC_PROFILE);
+        assertThat(Endpoint.of("GET", "/api/user/a@b.c/exists")).isEqualTo(Endpoint.USER_EXISTS);
+        assertThat(Endpoint.of("POST", "/api/user/register")).isEqualTo(Endpoint.REGISTER);
+        assertThat(Endpoint.of("PUT", "/api/user/a@b.c")).isEqualTo(Endpoint.UPDATE_USER);
+        assertThat(Endpoint.of("POST", "/api/user/a@b.c/pic")).isEqualTo(Endpoint.UPLOAD_PICTURE);
+        assertThat(Endpoint.of("POST", "/api/user/a@b.c/links")).isEqualTo(Endpoint.ADD_LINK);
+        assertThat(Endpoint.of("DELETE", "/api/user/a@b.c/links")).isEqualTo(Endpoint.DELETE_LINKS);
+        assertThat(Endpoint.of("POST", "/api/user/a@b.c/links/Soft%20Chair")).isEqualTo(Endpoint.CLICK_LINK);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static Histogram decode(String encoded) throws Exception {
+        return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+    }
+}
@@ -0,0 +1,77 @@
+package linksharing.perf.worker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class WorkerServiceTest {
+
+    private static final int USERS = 50_000;
+
+    @Test
+    void stop_InterruptsAllVirtualThreadUsers() throws InterruptedException {
+        var blocked = new AtomicInteger();
+        var hangingRest = new HangingRestTemplate(blocked);
+        // stub only, no invocations are recorded for the 50k lookups
+        var context = mock(ApplicationContext.class, withSettings().stubOnly());
+        when(context.getBean(VirtualUser.class)).thenAnswer(invocation -> new VirtualUser(hangingRest, hangingRest));
+
+        var service = new WorkerService(new RestTemplate(), context, new LatencyRecorder());
+        var config = new TestConfig();
+        config.setTargetUrl("http://localhost:1");
+        config.setNumOfUsers(USERS);
+        config.setRampUpTime(1);
+        config.setDuration(3600);
+        config.setVirtualThreads(true);
+        service.start(config);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (blocked.get() < USERS && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(blocked.get()).isEqualTo(USERS);
+
+        long start = System.nanoTime();
+        service.stop();
+        Duration stopTime = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(service.isUsersTerminated()).isTrue();
+        assertThat(stopTime).isLessThan(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Every request blocks until the calling thread is interrupted, like a server that stopped responding.
+     */
+    private static class HangingRestTemplate extends RestTemplate {
+
+        private final AtomicInteger blocked;
+
+        HangingRestTemplate(AtomicInteger blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity,
+                                              Class<T> responseType, Object... uriVariables) {
+            blocked.incrementAndGet();
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ResourceAccessException("I/O error on " + method + " request for \"" + url + "\": interrupted");
+        }
+    }
+}
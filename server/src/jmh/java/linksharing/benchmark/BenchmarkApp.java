@@ -0,0 +1,31 @@
+package linksharing.benchmark;
+
+import linksharing.Application;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Starts the application without the web server, on the in-memory H2 database the tests use.
+ */
+final class BenchmarkApp {
+
+    private BenchmarkApp() {
+    }
+
+    static ConfigurableApplicationContext start(Path picsDirectory, String... properties) {
+        var args = Stream.concat(Stream.of(
+                "--pics.directory=" + picsDirectory,
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn"
+        ), Stream.of(properties)).toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+}
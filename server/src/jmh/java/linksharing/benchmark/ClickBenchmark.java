@@ -0,0 +1,40 @@
+package linksharing.benchmark;
+
+import linksharing.metrics.MetricsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The cost of a click on the request thread. The background flusher writes to H2 meanwhile, once the queue is full
+ * clicks are dropped (and still counted in the rollups).
+ */
+@State(Scope.Benchmark)
+public class ClickBenchmark {
+
+    private Path picsDirectory;
+    private ConfigurableApplicationContext context;
+    private MetricsService metricsService;
+
+    @Setup
+    public void setUp() throws IOException {
+        picsDirectory = Files.createTempDirectory("bench-pics");
+        context = BenchmarkApp.start(picsDirectory, "--clicks.queue-capacity=100000");
+        metricsService = context.getBean(MetricsService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(picsDirectory);
+    }
+
+    @Benchmark
+    public boolean linkClicked() {
+        return metricsService.linkClicked("bench@example.com", "https://example.com/1", "jmh", "127.0.0.1");
+    }
+}
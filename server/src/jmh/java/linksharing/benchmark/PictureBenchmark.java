@@ -0,0 +1,82 @@
+package linksharing.benchmark;
+
+import linksharing.service.FileSystemPictureStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class PictureBenchmark {
+
+    @Param({"65536"})
+    public int size;
+
+    private Path directory;
+    private FileSystemPictureStore store;
+    private Path newPictureDirectory;
+    private FileSystemPictureStore newPictureStore;
+    private byte[] content;
+    private byte[] newContent;
+    private String key;
+    private long uploads;
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench-pics");
+        store = new FileSystemPictureStore(directory.resolve("store").toString());
+        content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        key = store.save(new ByteArrayInputStream(content), Long.MAX_VALUE);
+        newContent = content.clone();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        newPictureDirectory = directory.resolve("new");
+        newPictureStore = new FileSystemPictureStore(newPictureDirectory.toString());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException {
+        // every call of saveNewPicture keeps a file, do not let them pile up across iterations
+        FileSystemUtils.deleteRecursively(newPictureDirectory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    /**
+     * The upload of a picture that is stored already: hashing and the synced temp file, no new file is kept.
+     */
+    @Benchmark
+    public String saveExistingPicture() throws IOException {
+        return store.save(new ByteArrayInputStream(content), Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public String saveNewPicture() throws IOException {
+        ByteBuffer.wrap(newContent).putLong(0, ++uploads);
+        return newPictureStore.save(new ByteArrayInputStream(newContent), Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long readPicture() throws IOException {
+        long total = 0;
+        try (var in = store.get(key).content().getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
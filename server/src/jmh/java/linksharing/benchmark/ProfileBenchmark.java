@@ -0,0 +1,64 @@
+package linksharing.benchmark;
+
+import linksharing.dto.LinkDto;
+import linksharing.dto.UserDto;
+import linksharing.service.AppService;
+import linksharing.service.ProfileCache;
+import linksharing.service.PublicProfile;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+public class ProfileBenchmark {
+
+    private static final String EMAIL = "bench@example.com";
+
+    @Param({"10"})
+    public int links;
+
+    private Path picsDirectory;
+    private ConfigurableApplicationContext context;
+    private AppService appService;
+    private ProfileCache profileCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        picsDirectory = Files.createTempDirectory("bench-pics");
+        context = BenchmarkApp.start(picsDirectory);
+        appService = context.getBean(AppService.class);
+        profileCache = context.getBean(ProfileCache.class);
+
+        appService.registerUser(EMAIL);
+        appService.updateUser(EMAIL, new UserDto("John", "Doe"));
+        appService.replaceLinks(EMAIL, IntStream.range(0, links)
+                .mapToObj(i -> new LinkDto("Link " + i, "https://example.com/" + i))
+                .toList());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(picsDirectory);
+    }
+
+    @Benchmark
+    public Optional<PublicProfile> getPublicProfile() {
+        return appService.getPublicProfile(EMAIL);
+    }
+
+    /**
+     * A profile cache miss on every call, answered by the Hibernate query cache.
+     */
+    @Benchmark
+    public Optional<PublicProfile> getPublicProfileUncached() {
+        profileCache.invalidate(EMAIL);
+        return appService.getPublicProfile(EMAIL);
+    }
+}
@@ -0,0 +1,35 @@
+package linksharing.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import linksharing.dto.InfoDto;
+import linksharing.dto.LinkDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"10"})
+    public int links;
+
+    private ObjectMapper objectMapper;
+    private InfoDto profile;
+
+    @Setup
+    public void setUp() {
+        // the defaults Spring MVC serializes responses with
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        profile = new InfoDto("bench@example.com", "John", "Doe", "/api/user/bench@example.com/pic",
+                IntStream.range(0, links)
+                        .mapToObj(i -> new LinkDto("Link " + i, "https://example.com/" + i))
+                        .toList());
+    }
+
+    @Benchmark
+    public byte[] serializeProfile() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(profile);
+    }
+}
@@ -1,29 +1,50 @@
 package linksharing;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import linksharing.dto.LinkDto;
 import linksharing.dto.UserDto;
 import linksharing.metrics.MetricsService;
 import linksharing.service.AppService;
+import linksharing.service.Picture;
+import linksharing.service.PictureTooLargeException;
+import linksharing.service.PublicProfile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
 
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 
 @RestController
 public class ApiRestController {
 
+    // browsers revalidate on every use (a 304 is cheap), shared caches such as a CDN may serve a profile for a while
+    private static final CacheControl PUBLIC_PROFILE_CACHE = CacheControl.maxAge(Duration.ZERO)
+            .sMaxAge(Duration.ofSeconds(30))
+            .staleWhileRevalidate(Duration.ofSeconds(30))
+            .cachePublic();
+
+    static final int MAX_BATCH_SIZE = 100;
+
     private final AppService appService;
     private final MetricsService metricsService;
+    private final ObjectMapper objectMapper;
 
-    public ApiRestController(AppService appService, MetricsService metricsService) {
+    public ApiRestController(AppService appService, MetricsService metricsService, ObjectMapper objectMapper) {
         this.appService = appService;
         this.metricsService = metricsService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/api/check")
@@ -42,15 +63,18 @@ public class ApiRestController {
 
     @PostMapping("/api/user/register")
     ResponseEntity<?> registerUser(@RequestBody String email) {
-        appService.registerUser(email);
+        if (appService.registerUser(email)) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(email);
+        }
         return ResponseEntity.ok(email);
     }
 
     @PutMapping("/api/user/{email}")
     ResponseEntity<?> updateUser(@PathVariable String email, @RequestBody UserDto dto) {
-        return appService.updateUser(email, dto)
-                .map(user -> ResponseEntity.ok(email))
-                .orElse(ResponseEntity.notFound().build());
+        if (!appService.updateUser(email, dto)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(email);
     }
 
     @PostMapping("/api/user/{email}/pic")
@@ -60,24 +84,36 @@ public class ApiRestController {
         }
 
         try {
-            return appService.updateProfilePicture(email, file)
-                    .map(user -> ResponseEntity.ok(email))
-                    .orElse(ResponseEntity.notFound().build());
+            if (!appService.updateProfilePicture(email, file)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(email);
+        } catch (PictureTooLargeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
         } catch (IOException e) {
             return new ResponseEntity<>("Failed to save profile picture: " + e.getMessage(), INTERNAL_SERVER_ERROR);
         }
     }
 
+    // Spring MVC answers If-None-Match/If-Modified-Since with 304 and Range with 206 for Resource bodies
     @GetMapping("/api/user/{email}/pic")
-    ResponseEntity<?> getProfilePicture(@PathVariable String email) {
+    ResponseEntity<?> getProfilePicture(@PathVariable String email, @RequestParam(required = false) Integer size) {
+        if (size != null && !appService.getThumbnailSizes().contains(size)) {
+            return new ResponseEntity<>("Supported sizes: " + appService.getThumbnailSizes(), HttpStatus.BAD_REQUEST);
+        }
         try {
-            byte[] imageBytes = appService.getProfilePicture(email);
-            if (imageBytes == null) {
+            Picture picture = size == null
+                    ? appService.getProfilePicture(email)
+                    : appService.getProfilePicture(email, size);
+            if (picture == null) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.ok()
                     .contentType(MediaType.IMAGE_JPEG)
-                    .body(imageBytes);
+                    .eTag(picture.etag())
+                    .lastModified(picture.lastModified())
+                    .cacheControl(CacheControl.noCache())
+                    .body(picture.content());
         } catch (IOException e) {
             return new ResponseEntity<>("Failed to read profile picture: " + e.getMessage(), INTERNAL_SERVER_ERROR);
         }
@@ -96,13 +132,82 @@ public class ApiRestController {
         return ResponseEntity.ok().build();
     }
 
+    @PutMapping("/api/user/{email}/links")
+    ResponseEntity<?> replaceLinks(@PathVariable String email, @RequestBody List<LinkDto> links) {
+        if (!appService.replaceLinks(email, links)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(email);
+    }
+
     @GetMapping("/api/public/{email}")
-    ResponseEntity<?> getPublicProfile(@PathVariable String email) {
+    ResponseEntity<?> getPublicProfile(@PathVariable String email,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            var version = appService.getProfileVersion(email);
+            if (version.isPresent() && etagMatches(ifNoneMatch, PublicProfile.etag(version.get()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(PublicProfile.etag(version.get()))
+                        .cacheControl(PUBLIC_PROFILE_CACHE)
+                        .build();
+            }
+        }
         return appService.getPublicProfile(email)
-                .map(ResponseEntity::ok)
+                .map(profile -> ResponseEntity.ok()
+                        .eTag(profile.etag())
+                        .cacheControl(PUBLIC_PROFILE_CACHE)
+                        .body(profile.profile()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Returns a JSON object of profiles keyed by email, unknown emails are left out.
+     * Profiles are written to the response as they become available, cached ones first.
+     */
+    @PostMapping("/api/public/batch")
+    ResponseEntity<?> getPublicProfiles(@RequestBody List<String> emails) {
+        if (emails.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().body("At most " + MAX_BATCH_SIZE + " emails per request");
+        }
+        StreamingResponseBody body = out -> {
+            try (var json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                try {
+                    appService.getPublicProfiles(emails, profile -> {
+                        try {
+                            json.writeObjectField(profile.profile().email(), profile.profile());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GetMapping("/api/user/{email}/stats")
+    ResponseEntity<?> getStats(@PathVariable String email) {
+        return ResponseEntity.ok(metricsService.getStats(email));
+    }
+
     @PostMapping("/api/user/{email}/links/{link}")
     ResponseEntity<?> linkClicked(@PathVariable String email, @PathVariable String link, HttpServletRequest request) {
         String userAgent = request.getHeader("User-Agent");
@@ -110,7 +215,9 @@ public class ApiRestController {
         if (clientIp == null) {
             clientIp = request.getRemoteAddr();
         }
-        metricsService.linkClicked(email, link, userAgent, clientIp);
+        if (!metricsService.linkClicked(email, link, userAgent, clientIp)) {
+            return ResponseEntity.status(SERVICE_UNAVAILABLE).build();
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -1,13 +1,47 @@
 package linksharing;
 
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
 
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
+    // multipart boundaries and part headers around the picture
+    private static final DataSize MULTIPART_OVERHEAD = DataSize.ofKilobytes(64);
+
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
 
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+
+    /**
+     * The container rejects larger multipart requests while parsing, before the picture store sees the stream.
+     * The request limit leaves room for the multipart framing, so a picture of exactly pics.max-size is accepted.
+     * Only in a servlet application, like the multipart properties it is built from.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public MultipartConfigElement multipartConfigElement(
+            MultipartProperties multipart,
+            @Value("${pics.max-size:5MB}") DataSize maxPictureSize
+    ) {
+        multipart.setMaxFileSize(maxPictureSize);
+        multipart.setMaxRequestSize(DataSize.ofBytes(maxPictureSize.toBytes() + MULTIPART_OVERHEAD.toBytes()));
+        return multipart.createMultipartConfig();
+    }
+
 }
@@ -0,0 +1,15 @@
+package linksharing;
+
+/**
+ * Threads for the background work of the app follow spring.threads.virtual.enabled like the request threads:
+ * virtual threads when it is set, daemon platform threads otherwise.
+ */
+public final class Threads {
+
+    private Threads() {
+    }
+
+    public static Thread.Builder builder(boolean virtual) {
+        return virtual ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+    }
+}
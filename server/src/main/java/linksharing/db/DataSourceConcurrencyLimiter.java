@@ -0,0 +1,48 @@
+package linksharing.db;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Wraps the DataSource in a {@link ConcurrencyLimitedDataSource}. On by default when virtual threads are enabled,
+ * the number of permits defaults to the size of the connection pool.
+ * Publishes "db.concurrency.available" and "db.concurrency.waiting".
+ */
+@Component
+@ConditionalOnExpression("${db.concurrency-limit.enabled:${spring.threads.virtual.enabled:false}}")
+public class DataSourceConcurrencyLimiter implements BeanPostProcessor, MeterBinder {
+
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public DataSourceConcurrencyLimiter(
+            @Value("${db.concurrency-limit.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+            @Value("${db.concurrency-limit.acquire-timeout:30s}") Duration acquireTimeout
+    ) {
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+            return new ConcurrencyLimitedDataSource(dataSource, permits, acquireTimeout);
+        }
+        return bean;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("db.concurrency.available", permits, Semaphore::availablePermits).register(registry);
+        Gauge.builder("db.concurrency.waiting", permits, Semaphore::getQueueLength).register(registry);
+    }
+}
@@ -0,0 +1,18 @@
+package linksharing.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.sql.DatabaseMetaData;
+
+public final class Databases {
+
+    private Databases() {
+    }
+
+    public static boolean isPostgres(JdbcTemplate jdbc) throws MetaDataAccessException {
+        String product = JdbcUtils.extractDatabaseMetaData(jdbc.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        return "PostgreSQL".equals(product);
+    }
+}
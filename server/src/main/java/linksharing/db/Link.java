@@ -4,18 +4,24 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
 
-import static jakarta.persistence.GenerationType.IDENTITY;
+import static jakarta.persistence.GenerationType.SEQUENCE;
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
 
 @Data
 @Entity
-@Table(name = "links")
+@Table(name = "links", indexes = @Index(name = "links_user_idx", columnList = "user_id"))
 @NoArgsConstructor
 @AllArgsConstructor
+@Cacheable
+@Cache(usage = READ_WRITE, region = "links")
 public class Link {
 
+    // IDENTITY would make Hibernate insert links one by one, a pooled sequence lets it batch them
     @Id
-    @GeneratedValue(strategy = IDENTITY)
+    @GeneratedValue(strategy = SEQUENCE, generator = "links_seq")
+    @SequenceGenerator(name = "links_seq", sequenceName = "links_seq", allocationSize = 50)
     private Long id;
 
     private String title;
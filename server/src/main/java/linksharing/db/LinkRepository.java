@@ -1,8 +1,17 @@
 package linksharing.db;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface LinkRepository extends JpaRepository<Link, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from Link l where l.user.email = :email")
+    int deleteByUserEmail(@Param("email") String email);
 }
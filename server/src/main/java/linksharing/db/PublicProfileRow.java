@@ -0,0 +1,16 @@
+package linksharing.db;
+
+/**
+ * One row of the public profile join: user columns repeated for each link, link columns null when there are none.
+ */
+public record PublicProfileRow(
+        String email,
+        String firstName,
+        String lastName,
+        String imageUrl,
+        long profileVersion,
+        Long linkId,
+        String linkTitle,
+        String linkUrl
+) {
+}
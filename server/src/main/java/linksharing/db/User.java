@@ -2,13 +2,18 @@ package linksharing.db;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
 
 import java.sql.Timestamp;
 import java.util.List;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+
 @Data
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = READ_WRITE, region = "users")
 public class User {
 
     @Id
@@ -17,9 +22,15 @@ public class User {
     private String firstName;
     private String lastName;
     private String imageUrl;
+    @Column(length = 64)
+    private String pictureKey;
+    // changed only by the bulk JPQL updates in UserRepository, saving the entity never writes it
+    @Column(nullable = false, updatable = false)
+    private long profileVersion;
     private Timestamp createdOn;
 
     @OneToMany(mappedBy = "user")
+    @Cache(usage = READ_WRITE, region = "user-links")
     private List<Link> links;
 
     @PrePersist
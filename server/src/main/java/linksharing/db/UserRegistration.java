@@ -0,0 +1,12 @@
+package linksharing.db;
+
+public interface UserRegistration {
+
+    /**
+     * Inserts a user with just the email in a single statement, an existing user is left untouched.
+     * Manages its own transaction.
+     *
+     * @return true when the user was created, false when it existed already
+     */
+    boolean insertIfAbsent(String email);
+}
@@ -0,0 +1,83 @@
+package linksharing.db;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.hibernate.query.NativeQuery;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+
+/**
+ * A native insert instead of {@code save}: the email is an assigned id, so save would merge and read the row first.
+ * It still runs through Hibernate, so the second-level and query caches of users are invalidated.
+ */
+class UserRegistrationImpl implements UserRegistration {
+
+    private static final String POSTGRES_INSERT = """
+            insert into users (email, profile_version, created_on) values (?1, 0, ?2)
+            on conflict (email) do nothing
+            """;
+    private static final String MERGE_INSERT = """
+            merge into users u
+            using (values (cast(?1 as varchar), cast(?2 as timestamp))) as d (email, created_on)
+            on u.email = d.email
+            when not matched then insert (email, profile_version, created_on) values (d.email, 0, d.created_on)
+            """;
+
+    private final EntityManager entityManager;
+    private final boolean postgres;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate newTransaction;
+
+    UserRegistrationImpl(EntityManager entityManager, JdbcTemplate jdbc, PlatformTransactionManager transactionManager)
+            throws MetaDataAccessException {
+        this.entityManager = entityManager;
+        // H2 (tests) has no ON CONFLICT, Postgres MERGE is not safe against concurrent inserts
+        this.postgres = Databases.isPostgres(jdbc);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean insertIfAbsent(String email) {
+        if (postgres) {
+            // ON CONFLICT DO NOTHING never fails on a duplicate, anything thrown is a real failure
+            return transaction.execute(status -> insert(POSTGRES_INSERT, email));
+        }
+        try {
+            // a failed statement marks its transaction rollback-only, so it must not be a caller's transaction
+            return newTransaction.execute(status -> insert(MERGE_INSERT, email));
+        } catch (PersistenceException e) {
+            if (isUniqueViolation(e)) {
+                // the MERGE lost the race against a concurrent registration of the same email
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean insert(String sql, String email) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(User.class)
+                .setParameter(1, email)
+                .setParameter(2, new Timestamp(System.currentTimeMillis()))
+                .executeUpdate() > 0;
+    }
+
+    private static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintKind.UNIQUE;
+            }
+        }
+        return false;
+    }
+}
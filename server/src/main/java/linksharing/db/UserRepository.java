@@ -1,8 +1,78 @@
 package linksharing.db;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, String>, UserRegistration {
+
+    // cached queries are invalidated by any write to users or links, they pay off while reads dominate
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("""
+            select new linksharing.db.PublicProfileRow(
+                u.email, u.firstName, u.lastName, u.imageUrl, u.profileVersion, l.id, l.title, l.url)
+            from User u left join u.links l
+            where u.email = :email
+            order by l.id
+            """)
+    List<PublicProfileRow> findPublicProfile(@Param("email") String email);
+
+    @Query("""
+            select new linksharing.db.PublicProfileRow(
+                u.email, u.firstName, u.lastName, u.imageUrl, u.profileVersion, l.id, l.title, l.url)
+            from User u left join u.links l
+            where u.email in :emails
+            order by u.email, l.id
+            """)
+    List<PublicProfileRow> findPublicProfiles(@Param("emails") Collection<String> emails);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select u.profileVersion from User u where u.email = :email")
+    Optional<Long> findProfileVersion(@Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.profileVersion = u.profileVersion + 1 where u.email = :email")
+    int bumpProfileVersion(@Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update User u set u.firstName = :firstName, u.lastName = :lastName, u.profileVersion = u.profileVersion + 1
+            where u.email = :email
+            """)
+    int updateNames(@Param("email") String email, @Param("firstName") String firstName, @Param("lastName") String lastName);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select u.pictureKey from User u where u.email = :email")
+    Optional<String> findPictureKey(@Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update User u set u.pictureKey = :key, u.imageUrl = :imageUrl, u.profileVersion = u.profileVersion + 1
+            where u.email = :email
+            """)
+    int updatePicture(@Param("email") String email, @Param("key") String key, @Param("imageUrl") String imageUrl);
+
+    // for pictures moved from the old layout, a picture uploaded in the meantime is kept
+    @Transactional
+    @Modifying
+    @Query("""
+            update User u set u.pictureKey = :key, u.imageUrl = :imageUrl, u.profileVersion = u.profileVersion + 1
+            where u.email = :email and u.pictureKey is null
+            """)
+    int updateMissingPicture(@Param("email") String email, @Param("key") String key, @Param("imageUrl") String imageUrl);
 }
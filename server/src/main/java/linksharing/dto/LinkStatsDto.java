@@ -0,0 +1,4 @@
+package linksharing.dto;
+
+public record LinkStatsDto(String url, long lastHour, long lastDay) {
+}
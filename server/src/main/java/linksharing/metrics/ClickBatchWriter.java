@@ -0,0 +1,34 @@
+package linksharing.metrics;
+
+import linksharing.db.Databases;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class ClickBatchWriter {
+
+    private static final String INSERT_SQL =
+            "insert into metrics (id, user_email, link_url, client_ip, user_agent, clicked_at) values (%s, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final String insertSql;
+
+    public ClickBatchWriter(JdbcTemplate jdbc) throws MetaDataAccessException {
+        this.jdbc = jdbc;
+        this.insertSql = INSERT_SQL.formatted(
+                Databases.isPostgres(jdbc) ? "nextval('metrics_seq')" : "next value for metrics_seq");
+    }
+
+    public void insert(List<Metric> metrics) {
+        jdbc.batchUpdate(insertSql, metrics, metrics.size(), (ps, metric) -> {
+            ps.setString(1, metric.getUserEmail());
+            ps.setString(2, metric.getLinkUrl());
+            ps.setString(3, metric.getClientIp());
+            ps.setString(4, metric.getUserAgent());
+            ps.setTimestamp(5, metric.getClickedAt());
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package linksharing.metrics;
+
+import linksharing.db.Databases;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minute and hour click rollups. Both tables are keyed by (user_email, bucket, link_url),
+ * so a per-user stats read touches at most one row per link and bucket.
+ */
+@Repository
+public class ClickRollupRepository {
+
+    static final String MINUTE_TABLE = "click_rollup_minute";
+    static final String HOUR_TABLE = "click_rollup_hour";
+
+    private static final String POSTGRES_UPSERT = """
+            insert into %1$s (user_email, link_url, bucket, clicks) values (?, ?, ?, ?)
+            on conflict (user_email, bucket, link_url) do update set clicks = %1$s.clicks + excluded.clicks
+            """;
+    private static final String MERGE_UPSERT = """
+            merge into %1$s t
+            using (values (cast(? as varchar(255)), cast(? as varchar(2048)), cast(? as timestamp), cast(? as bigint)))
+                as d (user_email, link_url, bucket, clicks)
+            on t.user_email = d.user_email and t.link_url = d.link_url and t.bucket = d.bucket
+            when matched then update set clicks = t.clicks + d.clicks
+            when not matched then insert (user_email, link_url, bucket, clicks)
+                values (d.user_email, d.link_url, d.bucket, d.clicks)
+            """;
+    private static final String SUM_SINCE = """
+            select link_url, sum(clicks) from %s where user_email = ? and bucket >= ? group by link_url
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final String upsertSql;
+
+    public ClickRollupRepository(JdbcTemplate jdbc) throws MetaDataAccessException {
+        this.jdbc = jdbc;
+        // H2 (tests) has no ON CONFLICT ... DO UPDATE, Postgres MERGE is not safe against concurrent inserts
+        this.upsertSql = Databases.isPostgres(jdbc) ? POSTGRES_UPSERT : MERGE_UPSERT;
+    }
+
+    @Transactional
+    public void add(List<ClickDelta> minuteDeltas, List<ClickDelta> hourDeltas) {
+        upsert(MINUTE_TABLE, minuteDeltas);
+        upsert(HOUR_TABLE, hourDeltas);
+    }
+
+    public Map<String, Long> sumByLink(String table, String userEmail, Timestamp since) {
+        var sums = new HashMap<String, Long>();
+        jdbc.query(SUM_SINCE.formatted(table), rs -> {
+            sums.put(rs.getString(1), rs.getLong(2));
+        }, userEmail, since);
+        return sums;
+    }
+
+    public int deleteOlderThan(String table, Timestamp before) {
+        return jdbc.update("delete from " + table + " where bucket < ?", before);
+    }
+
+    private void upsert(String table, List<ClickDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate(upsertSql.formatted(table), deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.userEmail());
+            ps.setString(2, delta.linkUrl());
+            ps.setTimestamp(3, delta.bucket());
+            ps.setLong(4, delta.clicks());
+        });
+    }
+
+    public record ClickDelta(String userEmail, String linkUrl, Timestamp bucket, long clicks) {
+    }
+}
@@ -0,0 +1,142 @@
+package linksharing.metrics;
+
+import jakarta.annotation.PreDestroy;
+import linksharing.dto.LinkStatsDto;
+import linksharing.metrics.ClickRollupRepository.ClickDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static linksharing.metrics.ClickRollupRepository.HOUR_TABLE;
+import static linksharing.metrics.ClickRollupRepository.MINUTE_TABLE;
+
+/**
+ * In-memory click counters per (user, link, minute) that are periodically added to the rollup tables.
+ * Counting is a map lookup and a {@link LongAdder} increment, so it stays cheap on the request thread.
+ */
+@Component
+public class ClickRollups {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRollups.class);
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final ConcurrentHashMap<CounterKey, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ClickRollupRepository repo;
+    private final Clock clock;
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+
+    /**
+     * The retentions must cover the windows served by {@link #getStats}: an hour of minute rollups and a day of
+     * hour rollups.
+     */
+    public ClickRollups(
+            ClickRollupRepository repo,
+            Clock clock,
+            @Value("${clicks.rollup.minute-retention:2d}") Duration minuteRetention,
+            @Value("${clicks.rollup.hour-retention:2d}") Duration hourRetention
+    ) {
+        this.repo = repo;
+        this.clock = clock;
+        this.minuteRetention = minuteRetention;
+        this.hourRetention = hourRetention;
+    }
+
+    public void record(String userEmail, String linkUrl, long clickedAtMillis) {
+        var key = new CounterKey(userEmail, linkUrl, clickedAtMillis - clickedAtMillis % MINUTE_MILLIS);
+        counters.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${clicks.rollup.flush-interval-ms:10000}")
+    public void flush() {
+        long currentMinute = currentMinute();
+        var minuteDeltas = new ArrayList<ClickDelta>();
+        var hourTotals = new HashMap<CounterKey, Long>();
+        counters.forEach((key, adder) -> {
+            long clicks = adder.sumThenReset();
+            if (key.bucket() < currentMinute) {
+                // the bucket is closed, clicks still racing in are rare enough to ignore
+                counters.remove(key, adder);
+            }
+            if (clicks == 0) {
+                return;
+            }
+            minuteDeltas.add(new ClickDelta(key.userEmail(), key.linkUrl(), new Timestamp(key.bucket()), clicks));
+            var hourKey = new CounterKey(key.userEmail(), key.linkUrl(), key.bucket() - key.bucket() % HOUR_MILLIS);
+            hourTotals.merge(hourKey, clicks, Long::sum);
+        });
+        if (minuteDeltas.isEmpty()) {
+            return;
+        }
+
+        var hourDeltas = new ArrayList<ClickDelta>(hourTotals.size());
+        hourTotals.forEach((key, clicks) ->
+                hourDeltas.add(new ClickDelta(key.userEmail(), key.linkUrl(), new Timestamp(key.bucket()), clicks)));
+        try {
+            repo.add(minuteDeltas, hourDeltas);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} click rollups, keeping them for the next flush", minuteDeltas.size(), e);
+            minuteDeltas.forEach(delta -> counters
+                    .computeIfAbsent(new CounterKey(delta.userEmail(), delta.linkUrl(), delta.bucket().getTime()), k -> new LongAdder())
+                    .add(delta.clicks()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${clicks.rollup.prune-interval-ms:3600000}")
+    public void pruneRollups() {
+        var minutesBefore = new Timestamp(clock.millis() - minuteRetention.toMillis());
+        int deleted = repo.deleteOlderThan(MINUTE_TABLE, minutesBefore);
+        log.info("Pruned {} minute click rollups older than {}", deleted, minutesBefore);
+        var hoursBefore = new Timestamp(clock.millis() - hourRetention.toMillis());
+        deleted = repo.deleteOlderThan(HOUR_TABLE, hoursBefore);
+        log.info("Pruned {} hour click rollups older than {}", deleted, hoursBefore);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Clicks per link over the last hour (minute rollups) and the last day (hour rollups),
+     * read from at most 60 + 24 rows per link whatever the size of the raw metrics table.
+     */
+    public List<LinkStatsDto> getStats(String userEmail) {
+        long currentMinute = currentMinute();
+        long currentHour = currentMinute - currentMinute % HOUR_MILLIS;
+        Map<String, Long> lastHour = repo.sumByLink(MINUTE_TABLE, userEmail, new Timestamp(currentMinute - 59 * MINUTE_MILLIS));
+        Map<String, Long> lastDay = repo.sumByLink(HOUR_TABLE, userEmail, new Timestamp(currentHour - 23 * HOUR_MILLIS));
+
+        var urls = new TreeSet<>(lastDay.keySet());
+        urls.addAll(lastHour.keySet());
+        return urls.stream()
+                .map(url -> new LinkStatsDto(url, lastHour.getOrDefault(url, 0L), lastDay.getOrDefault(url, 0L)))
+                .sorted(Comparator.comparingLong(LinkStatsDto::lastDay).reversed())
+                .toList();
+    }
+
+    private long currentMinute() {
+        long now = clock.millis();
+        return now - now % MINUTE_MILLIS;
+    }
+
+    private record CounterKey(String userEmail, String linkUrl, long bucket) {
+    }
+}
@@ -3,6 +3,8 @@ package linksharing.metrics;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,17 +12,19 @@ import lombok.NoArgsConstructor;
 
 import java.sql.Timestamp;
 
-import static jakarta.persistence.GenerationType.IDENTITY;
+import static jakarta.persistence.GenerationType.SEQUENCE;
 
 @Data
 @Entity
-@Table(name = "metrics")
+@Table(name = "metrics", indexes = @Index(name = "metrics_user_clicked_idx", columnList = "user_email, clicked_at"))
 @AllArgsConstructor
 @NoArgsConstructor
 public class Metric {
 
+    // rows are written by ClickBatchWriter with one sequence value each, there is no pooled optimizer to feed
     @Id
-    @GeneratedValue(strategy = IDENTITY)
+    @GeneratedValue(strategy = SEQUENCE, generator = "metrics_seq")
+    @SequenceGenerator(name = "metrics_seq", sequenceName = "metrics_seq", allocationSize = 1)
     private Long id;
 
     private String userEmail;
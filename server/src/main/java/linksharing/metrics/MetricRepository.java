@@ -1,8 +0,0 @@
-package linksharing.metrics;
-
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-@Repository
-public interface MetricRepository extends JpaRepository<Metric, Long> {
-}
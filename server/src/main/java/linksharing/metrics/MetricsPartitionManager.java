@@ -0,0 +1,148 @@
+package linksharing.metrics;
+
+import jakarta.annotation.PostConstruct;
+import linksharing.db.Databases;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps one partition of the metrics table per day: creates partitions ahead of time
+ * and drops whole partitions past the retention period instead of deleting rows.
+ * <p>
+ * On Postgres the partitions are attached to the range partitioned metrics table from schema-postgresql.sql.
+ * Other databases (H2 in tests) get plain tables with the same names as a stand-in, so the scheduling logic is the same.
+ */
+@Component
+public class MetricsPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsPartitionManager.class);
+
+    static final String PARTITION_PREFIX = "metrics_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{8})");
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String LIST_TABLES = """
+            select table_name from information_schema.tables
+            where table_schema = current_schema and lower(table_name) like 'metrics_p%'
+            """;
+    private static final String IS_PARTITIONED = """
+            select count(*) from pg_partitioned_table where partrelid = to_regclass('metrics')
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final int retentionDays;
+    private final int daysAhead;
+    private final boolean postgres;
+
+    private volatile boolean enabled = true;
+
+    public MetricsPartitionManager(
+            JdbcTemplate jdbc,
+            Clock clock,
+            @Value("${metrics.partitions.retention-days:30}") int retentionDays,
+            @Value("${metrics.partitions.days-ahead:3}") int daysAhead
+    ) throws MetaDataAccessException {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.retentionDays = retentionDays;
+        this.daysAhead = daysAhead;
+        this.postgres = Databases.isPostgres(jdbc);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (postgres) {
+            Integer partitioned = jdbc.queryForObject(IS_PARTITIONED, Integer.class);
+            if (partitioned == null || partitioned == 0) {
+                log.warn("metrics is not a partitioned table, partition maintenance is disabled. " +
+                        "Rename the existing table so schema-postgresql.sql can recreate it.");
+                enabled = false;
+                return;
+            }
+            jdbc.execute("create table if not exists metrics_default partition of metrics default");
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${metrics.partitions.cron:0 5 0 * * *}", zone = "UTC")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now(clock);
+        Map<LocalDate, String> existing = listPartitions();
+
+        for (LocalDate day = today; !day.isAfter(today.plusDays(daysAhead)); day = day.plusDays(1)) {
+            if (!existing.containsKey(day)) {
+                createPartition(day);
+            }
+        }
+
+        // a partition holds [day, day + 1), it is expired once the whole day is past the retention period
+        LocalDate oldestKept = today.minusDays(retentionDays);
+        existing.forEach((day, name) -> {
+            if (day.isBefore(oldestKept)) {
+                dropPartition(name);
+            }
+        });
+    }
+
+    public List<String> getPartitionNames() {
+        return List.copyOf(listPartitions().values());
+    }
+
+    static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + SUFFIX_FORMAT.format(day);
+    }
+
+    private Map<LocalDate, String> listPartitions() {
+        var partitions = new TreeMap<LocalDate, String>();
+        for (String table : jdbc.queryForList(LIST_TABLES, String.class)) {
+            String name = table.toLowerCase();
+            var matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                partitions.put(LocalDate.parse(matcher.group(1), SUFFIX_FORMAT), name);
+            }
+        }
+        return partitions;
+    }
+
+    private void createPartition(LocalDate day) {
+        String name = partitionName(day);
+        String sql = postgres
+                ? "create table if not exists %s partition of metrics for values from ('%s') to ('%s')"
+                        .formatted(name, day, day.plusDays(1))
+                : "create table if not exists %s as select * from metrics with no data".formatted(name);
+        try {
+            jdbc.execute(sql);
+            log.info("Created metrics partition {}", name);
+        } catch (DataAccessException e) {
+            // e.g. rows for that day already landed in the default partition
+            log.error("Failed to create metrics partition {}", name, e);
+        }
+    }
+
+    private void dropPartition(String name) {
+        try {
+            jdbc.execute("drop table if exists " + name);
+            log.info("Dropped expired metrics partition {}", name);
+        } catch (DataAccessException e) {
+            log.error("Failed to drop metrics partition {}", name, e);
+        }
+    }
+}
@@ -1,25 +1,179 @@
 package linksharing.metrics;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import linksharing.Threads;
+import linksharing.dto.LinkStatsDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Clicks are put on a bounded queue and written by a background flusher as JDBC batches,
+ * either when a batch is full or when the flush interval has elapsed.
+ */
 @Service
 public class MetricsService {
 
-    private final MetricRepository repo;
+    private static final Logger log = LoggerFactory.getLogger(MetricsService.class);
+
+    private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ClickBatchWriter writer;
+    private final ClickRollups rollups;
+    private final BlockingQueue<Metric> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration blockTimeout;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Thread flusher;
+
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running = true;
 
-    public MetricsService(MetricRepository repo) {
-        this.repo = repo;
+    public MetricsService(
+            ClickBatchWriter writer,
+            ClickRollups rollups,
+            MeterRegistry registry,
+            @Value("${clicks.queue-capacity:10000}") int queueCapacity,
+            @Value("${clicks.overflow-policy:drop}") OverflowPolicy overflowPolicy,
+            @Value("${clicks.block-timeout:50ms}") Duration blockTimeout,
+            @Value("${clicks.batch-size:500}") int batchSize,
+            @Value("${clicks.flush-interval:1s}") Duration flushInterval,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        this.writer = writer;
+        this.rollups = rollups;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.flusher = Threads.builder(virtualThreads).name("click-flusher").unstarted(this::runFlusher);
+
+        Gauge.builder("clicks.queue.depth", queue, BlockingQueue::size).register(registry);
+        this.flushTimer = Timer.builder("clicks.flush").register(registry);
+        this.droppedCounter = Counter.builder("clicks.dropped").register(registry);
+        this.failedCounter = Counter.builder("clicks.flush.failed").register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
     }
 
-    public void linkClicked(String userEmail, String linkUrl, String userAgent, String clientIp) {
+    /**
+     * @return false when the click was rejected because the queue is full (or the service is shutting down)
+     */
+    public boolean linkClicked(String userEmail, String linkUrl, String userAgent, String clientIp) {
+        if (!running) {
+            return false;
+        }
         Metric metric = new Metric();
         metric.setUserEmail(userEmail);
         metric.setLinkUrl(linkUrl);
         metric.setUserAgent(userAgent);
         metric.setClientIp(clientIp);
         metric.setClickedAt(new Timestamp(System.currentTimeMillis()));
-        repo.save(metric);
+        boolean accepted = enqueue(metric);
+        if (!accepted) {
+            droppedCounter.increment();
+        }
+        if (accepted || overflowPolicy == OverflowPolicy.DROP) {
+            rollups.record(userEmail, linkUrl, metric.getClickedAt().getTime());
+            return true;
+        }
+        return false;
+    }
+
+    public List<LinkStatsDto> getStats(String userEmail) {
+        return rollups.getStats(userEmail);
+    }
+
+    private boolean enqueue(Metric metric) {
+        if (overflowPolicy != OverflowPolicy.BLOCK) {
+            return queue.offer(metric);
+        }
+        try {
+            return queue.offer(metric, blockTimeout.toNanos(), NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runFlusher() {
+        while (running || !queue.isEmpty()) {
+            try {
+                var batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                log.warn("Click flusher interrupted, {} clicks left in queue", queue.size());
+                return;
+            }
+        }
+    }
+
+    private List<Metric> nextBatch() throws InterruptedException {
+        var batch = new ArrayList<Metric>(batchSize);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize) {
+            if (!running) {
+                queue.drainTo(batch, batchSize - batch.size());
+                break;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            var metric = queue.poll(Math.min(remaining, MAX_POLL_NANOS), NANOSECONDS);
+            if (metric != null) {
+                batch.add(metric);
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+        }
+        return batch;
+    }
+
+    private void flush(List<Metric> batch) {
+        try {
+            flushTimer.record(() -> writer.insert(batch));
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.error("Failed to write {} clicks", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (!flusher.isAlive()) {
+            return;
+        }
+        flusher.join(SHUTDOWN_TIMEOUT.toMillis());
+        if (flusher.isAlive()) {
+            log.warn("Click flusher did not finish in {}, {} clicks left in queue", SHUTDOWN_TIMEOUT, queue.size());
+        }
     }
 }
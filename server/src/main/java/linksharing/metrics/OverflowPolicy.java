@@ -0,0 +1,13 @@
+package linksharing.metrics;
+
+/**
+ * What {@link MetricsService#linkClicked} does when the click queue is full.
+ */
+public enum OverflowPolicy {
+    /** accept the request and discard the click */
+    DROP,
+    /** wait up to the configured block timeout for space, then reject */
+    BLOCK,
+    /** reject right away, the endpoint answers 503 */
+    REJECT
+}
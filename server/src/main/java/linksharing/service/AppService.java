@@ -1,7 +1,10 @@
 package linksharing.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import linksharing.db.Link;
 import linksharing.db.LinkRepository;
+import linksharing.db.PublicProfileRow;
 import linksharing.db.User;
 import linksharing.db.UserRepository;
 import linksharing.dto.InfoDto;
@@ -10,15 +13,20 @@ import linksharing.dto.UserDto;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @Service
 public class AppService {
@@ -27,66 +35,134 @@ public class AppService {
 
     private final UserRepository userRepo;
     private final LinkRepository linkRepo;
-    private final String picsDir;
+    private final ProfileCache profileCache;
+    private final KnownUsers knownUsers;
+    private final PictureStore pictureStore;
+    private final PictureCache pictureCache;
+    private final ThumbnailGenerator thumbnails;
+    private final DataSize maxPictureSize;
+
+    private final Timer pictureSaveTimer;
+    private final Timer pictureReadTimer;
+    private final Timer thumbnailReadTimer;
 
     public AppService(
             UserRepository userRepo,
             LinkRepository linkRepo,
-            @Value("${pics.directory:pics}") String picsDir
+            ProfileCache profileCache,
+            KnownUsers knownUsers,
+            PictureStore pictureStore,
+            PictureCache pictureCache,
+            ThumbnailGenerator thumbnails,
+            @Value("${pics.max-size:5MB}") DataSize maxPictureSize,
+            MeterRegistry registry
     ) {
         this.userRepo = userRepo;
         this.linkRepo = linkRepo;
-        this.picsDir = picsDir;
+        this.profileCache = profileCache;
+        this.knownUsers = knownUsers;
+        this.pictureStore = pictureStore;
+        this.pictureCache = pictureCache;
+        this.thumbnails = thumbnails;
+        this.maxPictureSize = maxPictureSize;
+        // reads are timed on cache misses only and cover opening the file, the bytes are streamed by the response
+        this.pictureSaveTimer = Timer.builder("pics.io").tag("operation", "save").register(registry);
+        this.pictureReadTimer = Timer.builder("pics.io").tag("operation", "read").register(registry);
+        this.thumbnailReadTimer = Timer.builder("pics.io").tag("operation", "read-thumbnail").register(registry);
     }
 
     public boolean userExists(String email) {
-        return userRepo.existsById(email);
+        return knownUsers.exists(email);
     }
 
-    public void registerUser(String email) {
+    /**
+     * @return true when the user was created, false when it was registered already (and is left as it is)
+     */
+    public boolean registerUser(String email) {
         log.info("Registering user: {}", email);
-        var user = new User();
-        user.setEmail(email);
-        userRepo.save(user);
+        knownUsers.registering(email);
+        // a missing user is never in the profile cache and starts at version 0, nothing to invalidate
+        return userRepo.insertIfAbsent(email);
     }
 
-    public Optional<User> updateUser(String email, UserDto dto) {
+    /**
+     * A single update statement that also bumps the profile version, the user is not read.
+     *
+     * @return false when there is no such user
+     */
+    public boolean updateUser(String email, UserDto dto) {
         log.info("Updating user: {}", email);
-        var userOpt = userRepo.findById(email);
-        if (userOpt.isPresent()) {
-            var user = userOpt.get();
-            user.setFirstName(dto.firstName());
-            user.setLastName(dto.lastName());
-            userRepo.save(user);
+        if (userRepo.updateNames(email, dto.firstName(), dto.lastName()) == 0) {
+            return false;
         }
-        return userOpt;
+        profileCache.invalidate(email);
+        return true;
     }
 
-    public Optional<User> updateProfilePicture(String email, MultipartFile file) throws IOException {
+    /**
+     * The picture is stored first and the user only points to it once it is durable. A previous picture
+     * is left in the store, it may be shared with other users. The user is not read, a single update statement
+     * sets the picture and bumps the profile version, so a concurrent name change is never overwritten.
+     *
+     * @return false when there is no such user
+     */
+    public boolean updateProfilePicture(String email, MultipartFile file) throws IOException {
         log.info("Updating profile picture for user: {}", email);
-        var userOpt = userRepo.findById(email);
-        if (userOpt.isPresent()) {
-            var user = userOpt.get();
-            user.setImageUrl("/api/user/" + email + "/pic");
-            userRepo.save(user);
+        if (!knownUsers.exists(email)) {
+            return false;
+        }
 
-            Path uploadDir = Paths.get(picsDir);
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
-            }
+        String key;
+        long start = System.nanoTime();
+        try (var in = file.getInputStream()) {
+            key = pictureStore.save(in, maxPictureSize.toBytes());
+        } finally {
+            pictureSaveTimer.record(System.nanoTime() - start, NANOSECONDS);
+        }
 
-            Path filePath = uploadDir.resolve(email + ".jpg");
-            Files.copy(file.getInputStream(), filePath, REPLACE_EXISTING);
+        if (userRepo.updatePicture(email, key, "/api/user/" + email + "/pic") == 0) {
+            return false; // the picture stays in the store unreferenced
         }
-        return userOpt;
+        profileCache.invalidate(email);
+        thumbnails.schedule(key);
+        return true;
+    }
+
+    public Picture getProfilePicture(String email) throws IOException {
+        var key = userRepo.findPictureKey(email);
+        if (key.isEmpty()) {
+            return null;
+        }
+        return pictureCache.get(key.get(), () -> timed(pictureReadTimer, () -> pictureStore.get(key.get())));
     }
 
-    public byte[] getProfilePicture(String email) throws IOException {
-        Path imagePath = Paths.get(picsDir, email + ".jpg");
-        if (!Files.exists(imagePath)) {
+    /**
+     * @return the thumbnail of the given size, or the original picture while the thumbnail is not rendered yet
+     */
+    public Picture getProfilePicture(String email, int size) throws IOException {
+        var key = userRepo.findPictureKey(email);
+        if (key.isEmpty()) {
             return null;
         }
-        return Files.readAllBytes(imagePath);
+        String variant = ThumbnailGenerator.variant(size);
+        Picture thumbnail = pictureCache.get(key.get() + "." + variant,
+                () -> timed(thumbnailReadTimer, () -> pictureStore.getVariant(key.get(), variant)));
+        return thumbnail != null
+                ? thumbnail
+                : pictureCache.get(key.get(), () -> timed(pictureReadTimer, () -> pictureStore.get(key.get())));
+    }
+
+    private static Picture timed(Timer timer, PictureCache.PictureLoader loader) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return loader.load();
+        } finally {
+            timer.record(System.nanoTime() - start, NANOSECONDS);
+        }
+    }
+
+    public List<Integer> getThumbnailSizes() {
+        return thumbnails.getSizes();
     }
 
     public Optional<User> addLink(String email, LinkDto dto) {
@@ -97,27 +173,89 @@ public class AppService {
             var newLink = new Link(null, dto.title(), dto.url(), user);
             newLink.setUser(user);
             linkRepo.save(newLink);
+            profileChanged(email);
         }
         return userOpt;
     }
 
     public void deleteLinks(String email) {
         log.info("Deleting links for user: {}", email);
-        var userOpt = userRepo.findById(email);
-        if (userOpt.isPresent()) {
-            var user = userOpt.get();
-            linkRepo.deleteAll(user.getLinks());
+        if (linkRepo.deleteByUserEmail(email) > 0) {
+            profileChanged(email);
         }
     }
 
-    public Optional<InfoDto> getPublicProfile(String email) {
-        var userOpt = userRepo.findById(email);
-        return userOpt.map(user -> new InfoDto(
-                user.getEmail(),
-                user.getFirstName(),
-                user.getLastName(),
-                user.getImageUrl(),
-                user.getLinks().stream().map(l -> new LinkDto(l.getTitle(), l.getUrl())).toList()
-        ));
+    @Transactional
+    public boolean replaceLinks(String email, List<LinkDto> dtos) {
+        log.info("Replacing links for user: {} ({} links)", email, dtos.size());
+        if (!userRepo.existsById(email)) {
+            return false;
+        }
+        var user = userRepo.getReferenceById(email);
+        linkRepo.deleteByUserEmail(email);
+        linkRepo.saveAll(dtos.stream().map(dto -> new Link(null, dto.title(), dto.url(), user)).toList());
+        profileChanged(email);
+        return true;
+    }
+
+    public Optional<PublicProfile> getPublicProfile(String email) {
+        return profileCache.get(email, this::loadPublicProfile);
+    }
+
+    /**
+     * Cached profiles are passed on right away, the others are loaded together with a single query.
+     * Unknown emails are skipped, every known one is passed on once.
+     */
+    public void getPublicProfiles(Collection<String> emails, Consumer<PublicProfile> consumer) {
+        var missing = new LinkedHashSet<String>();
+        for (String email : new LinkedHashSet<>(emails)) {
+            profileCache.getIfPresent(email).ifPresentOrElse(consumer, () -> missing.add(email));
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        // not put into the cache: unlike ProfileCache.get a plain put can race with an invalidation and keep a stale profile
+        toPublicProfiles(userRepo.findPublicProfiles(missing)).values().forEach(consumer);
+    }
+
+    /**
+     * Answers from the profile cache or with a single column read, the links are not loaded.
+     */
+    public Optional<Long> getProfileVersion(String email) {
+        return profileCache.getIfPresent(email)
+                .map(PublicProfile::version)
+                .or(() -> userRepo.findProfileVersion(email));
+    }
+
+    private void profileChanged(String email) {
+        userRepo.bumpProfileVersion(email);
+        profileCache.invalidate(email);
+    }
+
+    private Optional<PublicProfile> loadPublicProfile(String email) {
+        return Optional.ofNullable(toPublicProfiles(userRepo.findPublicProfile(email)).get(email));
+    }
+
+    /**
+     * @param rows one row per link (or a single row without a link) of each user, the rows of a user next to each other
+     */
+    private static Map<String, PublicProfile> toPublicProfiles(List<PublicProfileRow> rows) {
+        var profiles = new LinkedHashMap<String, PublicProfile>();
+        int from = 0;
+        while (from < rows.size()) {
+            var user = rows.get(from);
+            int to = from + 1;
+            while (to < rows.size() && rows.get(to).email().equals(user.email())) {
+                to++;
+            }
+            var links = rows.subList(from, to).stream()
+                    .filter(row -> row.linkId() != null)
+                    .map(row -> new LinkDto(row.linkTitle(), row.linkUrl()))
+                    .toList();
+            var profile = new InfoDto(user.email(), user.firstName(), user.lastName(), user.imageUrl(), links);
+            profiles.put(user.email(), new PublicProfile(profile, user.profileVersion()));
+            from = to;
+        }
+        return profiles;
     }
 }
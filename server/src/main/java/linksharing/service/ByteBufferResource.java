@@ -0,0 +1,87 @@
+package linksharing.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of a cached picture. Every stream reads its own duplicate of the buffer, so one resource
+ * can be served to many requests at once.
+ */
+final class ByteBufferResource extends AbstractResource {
+
+    private final ByteBuffer buffer;
+    private final long lastModified;
+
+    ByteBufferResource(ByteBuffer buffer, long lastModified) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        var view = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, view.remaining());
+                view.get(bytes, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.max(0, Math.min(n, view.remaining()));
+                view.position(view.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String getDescription() {
+        return "cached picture [" + buffer.capacity() + " bytes]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+}
@@ -0,0 +1,163 @@
+package linksharing.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores pictures under the hex SHA-256 of their content in two levels of shard directories,
+ * e.g. {pics.directory}/ab/cd/abcd...ef.jpg, so no directory grows beyond a few thousand entries
+ * and user input never ends up in a file name. A variant is stored next to its picture as {key}.{variant}.jpg.
+ * <p>
+ * Uploads are streamed into a temp file, synced and atomically renamed into place, so a picture
+ * is either complete or absent.
+ */
+@Component
+public class FileSystemPictureStore implements PictureStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSystemPictureStore.class);
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT = Pattern.compile("[0-9a-z]{1,16}");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public FileSystemPictureStore(@Value("${pics.directory:pics}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    @Override
+    public String save(InputStream content, long maxSize) throws IOException {
+        Files.createDirectories(root);
+        Path tempFile = Files.createTempFile(root, ".upload-", ".tmp");
+        try {
+            var digest = sha256();
+            try (var out = FileChannel.open(tempFile, WRITE)) {
+                copy(content, out, digest, maxSize);
+                out.force(true);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = path(key);
+            if (Files.exists(target)) {
+                // identical picture is already stored
+                return key;
+            }
+            Path shard = target.getParent();
+            boolean newShard = Files.notExists(shard);
+            Files.createDirectories(shard);
+            Files.move(tempFile, target, ATOMIC_MOVE, REPLACE_EXISTING);
+            syncDirectory(shard);
+            if (newShard) {
+                syncDirectory(shard.getParent());
+                syncDirectory(root);
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public Picture get(String key) throws IOException {
+        return read(path(key), key);
+    }
+
+    @Override
+    public void saveVariant(String key, String variant, byte[] content) throws IOException {
+        Path target = variantPath(key, variant);
+        Files.createDirectories(target.getParent());
+        // variants can be rendered again, so unlike uploads they are not synced to disk
+        Path tempFile = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+        try {
+            Files.write(tempFile, content);
+            Files.move(tempFile, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public Picture getVariant(String key, String variant) throws IOException {
+        return read(variantPath(key, variant), key + "." + variant);
+    }
+
+    Path path(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid picture key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key + ".jpg");
+    }
+
+    private Path variantPath(String key, String variant) {
+        if (!VARIANT.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Invalid picture variant: " + variant);
+        }
+        return path(key).resolveSibling(key + "." + variant + ".jpg");
+    }
+
+    private static Picture read(Path path, String id) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return new Picture(id, new FileSystemResource(path), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static void copy(InputStream in, FileChannel out, MessageDigest digest, long maxSize) throws IOException {
+        var buffer = new byte[COPY_BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxSize) {
+                throw new PictureTooLargeException(maxSize);
+            }
+            digest.update(buffer, 0, read);
+            var chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
+            }
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        // makes the rename itself durable, not every platform allows opening a directory
+        try (var channel = FileChannel.open(dir, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync directory {}", dir, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package linksharing.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import linksharing.db.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Membership check in front of {@link UserRepository#existsById}. Users are never deleted, so emails that
+ * were found once are kept in a bounded cache and answered without a query.
+ * <p>
+ * With users.exists.bloom-filter.enabled a Bloom filter of all emails is built from the users table at startup
+ * and extended on every registration, so unknown emails are answered without a query as well. The filter only
+ * learns about registrations handled by this instance, enable it only when a single instance writes users.
+ * <p>
+ * Every check is counted by "users.exists.checks" with the tag source=filter, cache or db.
+ */
+@Component
+public class KnownUsers {
+
+    private static final Logger log = LoggerFactory.getLogger(KnownUsers.class);
+
+    private final UserRepository userRepo;
+    private final JdbcTemplate jdbc;
+    private final Cache<String, Boolean> found;
+    private final BloomFilter filter;
+
+    private final Counter filterAnswers;
+    private final Counter cacheAnswers;
+    private final Counter dbAnswers;
+
+    private volatile boolean filterReady;
+
+    public KnownUsers(
+            UserRepository userRepo,
+            JdbcTemplate jdbc,
+            @Value("${users.exists.cache.max-size:100000}") long cacheSize,
+            @Value("${users.exists.bloom-filter.enabled:false}") boolean filterEnabled,
+            @Value("${users.exists.bloom-filter.expected-users:1000000}") long expectedUsers,
+            @Value("${users.exists.bloom-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            MeterRegistry registry
+    ) {
+        this.userRepo = userRepo;
+        this.jdbc = jdbc;
+        this.found = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        this.filter = filterEnabled ? new BloomFilter(expectedUsers, falsePositiveRate) : null;
+        this.filterAnswers = Counter.builder("users.exists.checks").tag("source", "filter").register(registry);
+        this.cacheAnswers = Counter.builder("users.exists.checks").tag("source", "cache").register(registry);
+        this.dbAnswers = Counter.builder("users.exists.checks").tag("source", "db").register(registry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (filter == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long[] count = {0};
+        jdbc.query("select email from users", rs -> {
+            filter.add(rs.getString(1));
+            count[0]++;
+        });
+        filterReady = true;
+        log.info("Built the user Bloom filter from {} users in {} ms ({} bits, {} hashes)",
+                count[0], (System.nanoTime() - start) / 1_000_000, filter.bitSize(), filter.hashCount());
+    }
+
+    public boolean exists(String email) {
+        if (filterReady && !filter.mightContain(email)) {
+            filterAnswers.increment();
+            return false;
+        }
+        if (found.getIfPresent(email) != null) {
+            cacheAnswers.increment();
+            return true;
+        }
+        dbAnswers.increment();
+        boolean exists = userRepo.existsById(email);
+        if (exists) {
+            found.put(email, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    /**
+     * Must be called before the user is stored, so a concurrent check can never be answered "no" by the filter
+     * for a stored user.
+     */
+    public void registering(String email) {
+        if (filter != null) {
+            filter.add(email);
+        }
+    }
+}
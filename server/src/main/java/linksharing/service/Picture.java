@@ -0,0 +1,20 @@
+package linksharing.service;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * A stored profile picture. The content is streamed to the client from the file or from the off-heap
+ * {@link PictureCache}, never loaded on the heap as a whole.
+ *
+ * @param id the content key in the {@link PictureStore}, or key.variant for a variant
+ */
+public record Picture(String id, Resource content, long length, long lastModified) {
+
+    /**
+     * Pictures are immutable and keyed by content, so the id identifies the bytes. File attributes would not:
+     * two same-sized uploads within the same millisecond would share them.
+     */
+    public String etag() {
+        return "\"" + id + "\"";
+    }
+}
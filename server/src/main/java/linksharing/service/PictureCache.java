@@ -0,0 +1,114 @@
+package linksharing.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Optional cache of picture bytes bounded by a total byte budget, evicted by Caffeine's W-TinyLFU policy.
+ * The bytes live in direct buffers outside the heap. Pictures larger than the entry limit are always
+ * streamed from the {@link PictureStore}. Keys are content keys, so entries never go stale.
+ * <p>
+ * Besides the "cache.*" meters (tag cache=pictures), "pics.cache.hit.ratio" and "pics.cache.resident.bytes"
+ * are published.
+ */
+@Component
+public class PictureCache {
+
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final Cache<String, Picture> cache;
+
+    public PictureCache(
+            @Value("${pics.cache.enabled:false}") boolean enabled,
+            @Value("${pics.cache.max-bytes:64MB}") DataSize maxBytes,
+            @Value("${pics.cache.max-entry-size:1MB}") DataSize maxEntrySize,
+            MeterRegistry registry
+    ) {
+        this.enabled = enabled;
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), maxBytes.toBytes());
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes.toBytes())
+                .<String, Picture>weigher((key, picture) -> (int) picture.length())
+                .recordStats()
+                .build();
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(registry, cache, "pictures");
+            Gauge.builder("pics.cache.hit.ratio", cache, c -> c.stats().hitRate()).register(registry);
+            Gauge.builder("pics.cache.resident.bytes", this, PictureCache::residentBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * @return the cached copy of the picture, or the picture from the loader when the cache is disabled
+     * or the picture is too large to be cached (null when there is no picture)
+     */
+    public Picture get(String key, PictureLoader loader) throws IOException {
+        if (!enabled) {
+            return loader.load();
+        }
+        var uncached = new Picture[1];
+        try {
+            Picture cached = cache.get(key, k -> {
+                Picture picture = load(loader);
+                if (picture == null || picture.length() > maxEntrySize) {
+                    uncached[0] = picture;
+                    return null;
+                }
+                return copyToBuffer(picture);
+            });
+            return cached != null ? cached : uncached[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public long residentBytes() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    private static Picture load(PictureLoader loader) {
+        try {
+            return loader.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Picture copyToBuffer(Picture picture) {
+        var buffer = ByteBuffer.allocateDirect((int) picture.length());
+        try (var in = Channels.newChannel(picture.content().getInputStream())) {
+            while (buffer.hasRemaining() && in.read(buffer) != -1) {
+                // keep reading until the buffer is full
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        return new Picture(picture.id(), new ByteBufferResource(buffer, picture.lastModified()), buffer.remaining(),
+                picture.lastModified());
+    }
+
+    @FunctionalInterface
+    public interface PictureLoader {
+        Picture load() throws IOException;
+    }
+}
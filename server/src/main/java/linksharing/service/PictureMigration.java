@@ -0,0 +1,141 @@
+package linksharing.service;
+
+import linksharing.Threads;
+import linksharing.db.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Move of the old flat layout ({pics.directory}/{email}.jpg and thumbs/{N}/{email}.jpg) into the
+ * {@link PictureStore}. Users upgraded from that layout have an image URL but no picture key, so their pictures
+ * are not found until this has run. It runs on startup unless pics.migration.enabled=false and can be run again,
+ * files that were migrated are deleted and files of unknown users are left in place. A user who uploaded a picture
+ * while the migration was running keeps it, the old file is deleted without being migrated.
+ */
+@Component
+@ConditionalOnProperty(name = "pics.migration.enabled", havingValue = "true", matchIfMissing = true)
+public class PictureMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PictureMigration.class);
+
+    private final UserRepository userRepo;
+    private final ProfileCache profileCache;
+    private final PictureStore store;
+    private final ThumbnailGenerator thumbnails;
+    private final Path picsDir;
+    private final int threads;
+    private final boolean virtualThreads;
+
+    public PictureMigration(
+            UserRepository userRepo,
+            ProfileCache profileCache,
+            PictureStore store,
+            ThumbnailGenerator thumbnails,
+            @Value("${pics.directory:pics}") String picsDir,
+            @Value("${pics.migration.threads:4}") int threads,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        this.userRepo = userRepo;
+        this.profileCache = profileCache;
+        this.store = store;
+        this.thumbnails = thumbnails;
+        this.picsDir = Paths.get(picsDir);
+        this.threads = threads;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException, InterruptedException {
+        migrate();
+    }
+
+    public Result migrate() throws IOException, InterruptedException {
+        if (!Files.isDirectory(picsDir)) {
+            return new Result(0, 0, 0);
+        }
+        List<Path> files;
+        try (var listing = Files.list(picsDir)) {
+            files = listing
+                    .filter(Files::isRegularFile)
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.endsWith(".jpg") && !name.startsWith(".");
+                    })
+                    .toList();
+        }
+        log.info("Migrating {} pictures from {} with {} threads", files.size(), picsDir, threads);
+
+        var migrated = new AtomicInteger();
+        var skipped = new AtomicInteger();
+        var failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Threads.builder(virtualThreads).name("picture-migration-", 1).factory());
+        try {
+            for (Path file : files) {
+                executor.execute(() -> {
+                    try {
+                        if (migrate(file)) {
+                            migrated.incrementAndGet();
+                        } else {
+                            skipped.incrementAndGet();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failed.incrementAndGet();
+                        log.error("Failed to migrate picture {}", file, e);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        var result = new Result(migrated.get(), skipped.get(), failed.get());
+        log.info("Picture migration finished: {}", result);
+        return result;
+    }
+
+    private boolean migrate(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String email = fileName.substring(0, fileName.length() - ".jpg".length());
+        if (!userRepo.existsById(email)) {
+            log.warn("No user for picture {}, leaving it in place", file);
+            return false;
+        }
+        String key;
+        try (var in = Files.newInputStream(file)) {
+            key = store.save(in, Long.MAX_VALUE);
+        }
+        boolean updated = userRepo.updateMissingPicture(email, key, "/api/user/" + email + "/pic") > 0;
+        Files.delete(file);
+        for (int size : thumbnails.getSizes()) {
+            Files.deleteIfExists(picsDir.resolve("thumbs").resolve(Integer.toString(size)).resolve(fileName));
+        }
+        if (!updated) {
+            log.info("{} uploaded a new picture, deleted the old one {}", email, file);
+            return false;
+        }
+        profileCache.invalidate(email);
+        // rendered here rather than queued, a large directory would overflow the thumbnail queue
+        thumbnails.generate(key);
+        return true;
+    }
+
+    public record Result(int migrated, int skipped, int failed) {
+    }
+}
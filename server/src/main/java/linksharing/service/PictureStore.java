@@ -0,0 +1,33 @@
+package linksharing.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage for picture bytes. Pictures are immutable and addressed by a key derived from their content,
+ * so storing the same picture twice returns the same key and keeps a single copy.
+ * <p>
+ * Variants (thumbnails) are derived pictures stored alongside the picture they were rendered from.
+ */
+public interface PictureStore {
+
+    /**
+     * Streams the content into the store.
+     *
+     * @return the key of the stored picture
+     * @throws PictureTooLargeException when the content is longer than maxSize, nothing is stored then
+     */
+    String save(InputStream content, long maxSize) throws IOException;
+
+    /**
+     * @return the picture, or null when nothing is stored under the key
+     */
+    Picture get(String key) throws IOException;
+
+    void saveVariant(String key, String variant, byte[] content) throws IOException;
+
+    /**
+     * @return the variant, or null when it was not stored (yet)
+     */
+    Picture getVariant(String key, String variant) throws IOException;
+}
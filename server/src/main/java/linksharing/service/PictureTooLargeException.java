@@ -0,0 +1,10 @@
+package linksharing.service;
+
+import java.io.IOException;
+
+public class PictureTooLargeException extends IOException {
+
+    public PictureTooLargeException(long maxSize) {
+        super("Profile picture exceeds the maximum size of " + maxSize + " bytes");
+    }
+}
@@ -0,0 +1,59 @@
+package linksharing.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of fully built public profiles keyed by email.
+ * Hit/miss/eviction counters are published as "cache.*" meters with the tag cache=profiles.
+ */
+@Component
+public class ProfileCache {
+
+    private final Cache<String, PublicProfile> cache;
+
+    public ProfileCache(
+            @Value("${profiles.cache.max-size:10000}") long maxSize,
+            @Value("${profiles.cache.ttl:60s}") Duration ttl,
+            MeterRegistry registry
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "profiles");
+    }
+
+    public Optional<PublicProfile> get(String email, Function<String, Optional<PublicProfile>> loader) {
+        // missing users are not cached, so a later registration is visible right away
+        return Optional.ofNullable(cache.get(email, key -> loader.apply(key).orElse(null)));
+    }
+
+    public Optional<PublicProfile> getIfPresent(String email) {
+        return Optional.ofNullable(cache.getIfPresent(email));
+    }
+
+    public void invalidate(String email) {
+        cache.invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a concurrent read may cache the old profile again until the transaction commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(email);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package linksharing.service;
+
+import linksharing.dto.InfoDto;
+
+/**
+ * A public profile with the version of the user it was built from. Every change of the profile bumps the version,
+ * so the version alone tells whether a client's copy is still current.
+ */
+public record PublicProfile(InfoDto profile, long version) {
+
+    public String etag() {
+        return etag(version);
+    }
+
+    public static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+}
@@ -0,0 +1,136 @@
+package linksharing.service;
+
+import jakarta.annotation.PreDestroy;
+import linksharing.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders fixed-size JPEG thumbnails of uploaded pictures on a small background pool.
+ * A thumbnail of size N fits in an N x N box, keeps the aspect ratio and is stored as variant "N"
+ * of the picture in the {@link PictureStore}. Until it exists the original picture is served instead.
+ */
+@Component
+public class ThumbnailGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailGenerator.class);
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final PictureStore store;
+    private final List<Integer> sizes;
+    private final ThreadPoolExecutor executor;
+
+    public ThumbnailGenerator(
+            PictureStore store,
+            @Value("${pics.thumbnails.sizes:64,128,256}") List<Integer> sizes,
+            @Value("${pics.thumbnails.threads:2}") int threads,
+            @Value("${pics.thumbnails.queue-capacity:1000}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        this.store = store;
+        this.sizes = List.copyOf(sizes);
+        // decoding is CPU bound, the pool stays bounded with virtual threads as well
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Threads.builder(virtualThreads).name("thumbnails-", 1).factory());
+    }
+
+    public List<Integer> getSizes() {
+        return sizes;
+    }
+
+    public static String variant(int size) {
+        return Integer.toString(size);
+    }
+
+    public void schedule(String key) {
+        try {
+            executor.execute(() -> generate(key));
+        } catch (RejectedExecutionException e) {
+            log.warn("Thumbnail queue is full, serving the original picture {}", key);
+        }
+    }
+
+    void generate(String key) {
+        BufferedImage image;
+        try {
+            Picture original = store.get(key);
+            if (original == null) {
+                return;
+            }
+            // in-memory image streams, a disk cache would only add temp file I/O (without changing ImageIO's global setting)
+            try (var in = original.content().getInputStream()) {
+                image = ImageIO.read(new MemoryCacheImageInputStream(in));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read picture {} for thumbnails", key, e);
+            return;
+        }
+        if (image == null) {
+            log.warn("Picture {} is not a readable image, no thumbnails generated", key);
+            return;
+        }
+        for (int size : sizes) {
+            try {
+                // identical uploads share their thumbnails
+                if (store.getVariant(key, variant(size)) == null) {
+                    store.saveVariant(key, variant(size), encode(scale(image, size)));
+                }
+            } catch (IOException e) {
+                log.warn("Failed to write {}px thumbnail of {}", size, key, e);
+            }
+        }
+    }
+
+    static BufferedImage scale(BufferedImage image, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        var thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static byte[] encode(BufferedImage thumbnail) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var imageOut = new MemoryCacheImageOutputStream(out)) {
+            if (!ImageIO.write(thumbnail, "jpg", imageOut)) {
+                throw new IOException("No JPEG writer available");
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Thumbnail generation did not finish in {}", SHUTDOWN_TIMEOUT);
+            executor.shutdownNow();
+        }
+    }
+}
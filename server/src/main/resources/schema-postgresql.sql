@@ -0,0 +1,62 @@
+-- Tables Hibernate cannot create itself. Runs on every startup, so every statement must be idempotent.
+
+create table if not exists users (
+    email varchar(255) not null primary key,
+    first_name varchar(255),
+    last_name varchar(255),
+    image_url varchar(255),
+    picture_key varchar(64),
+    profile_version bigint not null default 0,
+    created_on timestamp(6)
+);
+
+alter table users add column if not exists picture_key varchar(64);
+alter table users add column if not exists profile_version bigint not null default 0;
+
+create table if not exists links (
+    id bigint not null primary key,
+    title varchar(255),
+    url varchar(255),
+    user_id varchar(255) not null references users (email)
+);
+
+create index if not exists links_user_idx on links (user_id);
+
+-- Link ids come from a pooled sequence (allocationSize 50) so inserts can be batched.
+-- Links created before it got identity ids, keep the sequence above them.
+create sequence if not exists links_seq increment by 50;
+select setval('links_seq', greatest((select last_value from links_seq), (select coalesce(max(id), 0) + 1 from links)));
+
+-- Raw click log, one partition per day managed by MetricsPartitionManager.
+-- The partition key has to be part of the primary key.
+-- metrics_seq increments by 1, every click written by ClickBatchWriter takes one value (allocationSize 1 in Metric).
+create sequence if not exists metrics_seq increment by 1;
+alter sequence metrics_seq increment by 1;
+
+create table if not exists metrics (
+    id bigint not null default nextval('metrics_seq'),
+    user_email varchar(255),
+    link_url varchar(255),
+    client_ip varchar(255),
+    user_agent varchar(255),
+    clicked_at timestamp(6) not null,
+    primary key (id, clicked_at)
+) partition by range (clicked_at);
+
+create index if not exists metrics_user_clicked_idx on metrics (user_email, clicked_at);
+
+create table if not exists click_rollup_minute (
+    user_email varchar(255) not null,
+    link_url varchar(2048) not null,
+    bucket timestamp not null,
+    clicks bigint not null,
+    primary key (user_email, bucket, link_url)
+);
+
+create table if not exists click_rollup_hour (
+    user_email varchar(255) not null,
+    link_url varchar(2048) not null,
+    bucket timestamp not null,
+    clicks bigint not null,
+    primary key (user_email, bucket, link_url)
+);
@@ -1,29 +1,52 @@
 package linksharing;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import linksharing.dto.LinkDto;
+import linksharing.dto.LinkStatsDto;
 import linksharing.dto.UserDto;
 import linksharing.dto.InfoDto;
 import linksharing.db.User;
+import linksharing.metrics.MetricsService;
 import linksharing.service.AppService;
+import linksharing.service.Picture;
+import linksharing.service.PictureTooLargeException;
+import linksharing.service.PublicProfile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 class ApiRestControllerTest {
@@ -31,10 +54,17 @@ class ApiRestControllerTest {
     @Mock
     private AppService appService;
 
+    @Mock
+    private MetricsService metricsService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private ApiRestController controller;
 
     private static final String TEST_EMAIL = "test@example.com";
+    private static final String PICTURE_KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
 
     @Test
     void healthCheck_ShouldReturnOk() {
@@ -65,17 +95,19 @@ class ApiRestControllerTest {
     }
 
     @Test
-    void registerUser_ShouldRegisterAndReturnOk() {
+    void registerUser_WhenNewUser_ShouldRegisterAndReturnCreated() {
+        when(appService.registerUser(TEST_EMAIL)).thenReturn(true);
+
         ResponseEntity<?> response = controller.registerUser(TEST_EMAIL);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertEquals(TEST_EMAIL, response.getBody());
         verify(appService).registerUser(TEST_EMAIL);
     }
 
     @Test
     void registerUser_WhenUserAlreadyExists_ShouldReturnOk() {
-//        when(appService.userExists(TEST_EMAIL)).thenReturn(true);
+        when(appService.registerUser(TEST_EMAIL)).thenReturn(false);
 
         ResponseEntity<?> response = controller.registerUser(TEST_EMAIL);
 
@@ -87,8 +119,7 @@ class ApiRestControllerTest {
     @Test
     void updateUser_WhenUserExists_ShouldUpdateAndReturnOk() {
         UserDto dto = new UserDto("John", "Doe");
-        User user = new User();
-        when(appService.updateUser(TEST_EMAIL, dto)).thenReturn(Optional.of(user));
+        when(appService.updateUser(TEST_EMAIL, dto)).thenReturn(true);
 
         ResponseEntity<?> response = controller.updateUser(TEST_EMAIL, dto);
 
@@ -100,7 +131,7 @@ class ApiRestControllerTest {
     @Test
     void updateUser_WhenUserDoesNotExist_ShouldReturnNotFound() {
         UserDto dto = new UserDto("John", "Doe");
-        when(appService.updateUser(TEST_EMAIL, dto)).thenReturn(Optional.empty());
+        when(appService.updateUser(TEST_EMAIL, dto)).thenReturn(false);
 
         ResponseEntity<?> response = controller.updateUser(TEST_EMAIL, dto);
 
@@ -113,8 +144,7 @@ class ApiRestControllerTest {
         MockMultipartFile file = new MockMultipartFile(
             "file", "test.jpg", "image/jpeg", "test image content".getBytes()
         );
-        User user = new User();
-        when(appService.updateProfilePicture(eq(TEST_EMAIL), any())).thenReturn(Optional.of(user));
+        when(appService.updateProfilePicture(eq(TEST_EMAIL), any())).thenReturn(true);
 
         ResponseEntity<?> response = controller.updateProfilePicture(TEST_EMAIL, file);
 
@@ -123,6 +153,18 @@ class ApiRestControllerTest {
         verify(appService).updateProfilePicture(eq(TEST_EMAIL), any());
     }
 
+    @Test
+    void updateProfilePicture_WhenUserDoesNotExist_ShouldReturnNotFound() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file", "test.jpg", "image/jpeg", "test image content".getBytes()
+        );
+        when(appService.updateProfilePicture(eq(TEST_EMAIL), any())).thenReturn(false);
+
+        ResponseEntity<?> response = controller.updateProfilePicture(TEST_EMAIL, file);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
     @Test
     void updateProfilePicture_WithInvalidFileType_ShouldReturnBadRequest() {
         MockMultipartFile file = new MockMultipartFile(
@@ -135,23 +177,83 @@ class ApiRestControllerTest {
         assertTrue(response.getBody().toString().contains("Only .jpg or .jpeg files supported"));
     }
 
+    @Test
+    void updateProfilePicture_WhenTooLarge_ShouldReturnPayloadTooLarge() throws IOException {
+        MockMultipartFile file = new MockMultipartFile(
+            "file", "test.jpg", "image/jpeg", "test image content".getBytes()
+        );
+        when(appService.updateProfilePicture(eq(TEST_EMAIL), any())).thenThrow(new PictureTooLargeException(4));
+
+        ResponseEntity<?> response = controller.updateProfilePicture(TEST_EMAIL, file);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
     @Test
     void getProfilePicture_WhenExists_ShouldReturnImage() throws IOException {
         byte[] imageBytes = "test image content".getBytes();
-        when(appService.getProfilePicture(TEST_EMAIL)).thenReturn(imageBytes);
+        var picture = new Picture(PICTURE_KEY, new ByteArrayResource(imageBytes), imageBytes.length, 1_700_000_000_000L);
+        when(appService.getProfilePicture(TEST_EMAIL)).thenReturn(picture);
 
-        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL);
+        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
-        assertArrayEquals(imageBytes, (byte[]) response.getBody());
+        assertEquals(picture.etag(), response.getHeaders().getETag());
+        assertEquals(1_700_000_000_000L, response.getHeaders().getLastModified());
+        assertArrayEquals(imageBytes, ((Resource) response.getBody()).getContentAsByteArray());
+    }
+
+    @Test
+    void getProfilePicture_WhenETagMatches_ShouldReturnNotModified() throws Exception {
+        byte[] imageBytes = "test image content".getBytes();
+        var picture = new Picture(PICTURE_KEY, new ByteArrayResource(imageBytes), imageBytes.length, 1_700_000_000_000L);
+        when(appService.getProfilePicture(TEST_EMAIL)).thenReturn(picture);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mvc.perform(get("/api/user/{email}/pic", TEST_EMAIL).header(HttpHeaders.IF_NONE_MATCH, picture.etag()))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getProfilePicture_WithRange_ShouldReturnPartialContent() throws Exception {
+        byte[] imageBytes = "test image content".getBytes();
+        var picture = new Picture(PICTURE_KEY, new ByteArrayResource(imageBytes), imageBytes.length, 1_700_000_000_000L);
+        when(appService.getProfilePicture(TEST_EMAIL)).thenReturn(picture);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mvc.perform(get("/api/user/{email}/pic", TEST_EMAIL).header(HttpHeaders.RANGE, "bytes=5-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes("image".getBytes()));
+    }
+
+    @Test
+    void getProfilePicture_WithThumbnailSize_ShouldReturnThumbnail() throws IOException {
+        byte[] imageBytes = "thumbnail".getBytes();
+        var picture = new Picture(PICTURE_KEY + ".64", new ByteArrayResource(imageBytes), imageBytes.length, 1_700_000_000_000L);
+        when(appService.getThumbnailSizes()).thenReturn(List.of(64, 128));
+        when(appService.getProfilePicture(TEST_EMAIL, 64)).thenReturn(picture);
+
+        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL, 64);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(picture.content(), response.getBody());
+    }
+
+    @Test
+    void getProfilePicture_WithUnsupportedSize_ShouldReturnBadRequest() {
+        when(appService.getThumbnailSizes()).thenReturn(List.of(64, 128));
+
+        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL, 100);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
     void getProfilePicture_WhenDoesNotExist_ShouldReturnNotFound() throws IOException {
         when(appService.getProfilePicture(TEST_EMAIL)).thenReturn(null);
 
-        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL);
+        ResponseEntity<?> response = controller.getProfilePicture(TEST_EMAIL, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
@@ -181,14 +283,37 @@ class ApiRestControllerTest {
     }
 
     @Test
-    void getPublicProfile_WhenExists_ShouldReturnProfile() {
+    void replaceLinks_WhenUserExists_ShouldReturnOk() {
+        var links = List.of(new LinkDto("Test Link", "https://example.com"));
+        when(appService.replaceLinks(TEST_EMAIL, links)).thenReturn(true);
+
+        ResponseEntity<?> response = controller.replaceLinks(TEST_EMAIL, links);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(TEST_EMAIL, response.getBody());
+    }
+
+    @Test
+    void replaceLinks_WhenUserDoesNotExist_ShouldReturnNotFound() {
+        var links = List.of(new LinkDto("Test Link", "https://example.com"));
+        when(appService.replaceLinks(TEST_EMAIL, links)).thenReturn(false);
+
+        ResponseEntity<?> response = controller.replaceLinks(TEST_EMAIL, links);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void getPublicProfile_WhenExists_ShouldReturnProfileWithETag() {
         InfoDto infoDto = new InfoDto(TEST_EMAIL, "John", "Doe", "/api/user/test@example.com/pic", List.of());
-        when(appService.getPublicProfile(TEST_EMAIL)).thenReturn(Optional.of(infoDto));
+        when(appService.getPublicProfile(TEST_EMAIL)).thenReturn(Optional.of(new PublicProfile(infoDto, 3)));
 
-        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL);
+        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(infoDto, response.getBody());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        assertTrue(response.getHeaders().getCacheControl().contains("s-maxage=30"));
         verify(appService).getPublicProfile(TEST_EMAIL);
     }
 
@@ -196,9 +321,111 @@ class ApiRestControllerTest {
     void getPublicProfile_WhenDoesNotExist_ShouldReturnNotFound() {
         when(appService.getPublicProfile(TEST_EMAIL)).thenReturn(Optional.empty());
 
-        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL);
+        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         verify(appService).getPublicProfile(TEST_EMAIL);
     }
+
+    @Test
+    void getPublicProfile_WhenETagMatches_ShouldReturnNotModifiedWithoutLoading() {
+        when(appService.getProfileVersion(TEST_EMAIL)).thenReturn(Optional.of(3L));
+
+        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL, "\"2\", W/\"3\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(appService, never()).getPublicProfile(any());
+    }
+
+    @Test
+    void getPublicProfile_WhenETagIsStale_ShouldReturnProfile() {
+        InfoDto infoDto = new InfoDto(TEST_EMAIL, "John", "Doe", null, List.of());
+        when(appService.getProfileVersion(TEST_EMAIL)).thenReturn(Optional.of(4L));
+        when(appService.getPublicProfile(TEST_EMAIL)).thenReturn(Optional.of(new PublicProfile(infoDto, 4)));
+
+        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL, "\"3\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(infoDto, response.getBody());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void getPublicProfiles_ShouldStreamProfilesKeyedByEmail() throws IOException {
+        InfoDto first = new InfoDto("first@example.com", "John", "Doe", null, List.of(new LinkDto("One", "https://example.com/1")));
+        InfoDto second = new InfoDto("second@example.com", "Jane", "Doe", null, List.of());
+        var emails = List.of("first@example.com", "second@example.com", "unknown@example.com");
+        doAnswer(invocation -> {
+            Consumer<PublicProfile> consumer = invocation.getArgument(1);
+            consumer.accept(new PublicProfile(first, 1));
+            consumer.accept(new PublicProfile(second, 1));
+            return null;
+        }).when(appService).getPublicProfiles(eq(emails), any());
+
+        ResponseEntity<?> response = controller.getPublicProfiles(emails);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        var out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        Map<String, InfoDto> profiles = objectMapper.readValue(out.toByteArray(),
+                objectMapper.getTypeFactory().constructMapType(Map.class, String.class, InfoDto.class));
+        assertEquals(Map.of(first.email(), first, second.email(), second), profiles);
+    }
+
+    @Test
+    void getPublicProfiles_WhenTooManyEmails_ShouldReturnBadRequest() {
+        var emails = Collections.nCopies(ApiRestController.MAX_BATCH_SIZE + 1, TEST_EMAIL);
+
+        ResponseEntity<?> response = controller.getPublicProfiles(emails);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(appService, never()).getPublicProfiles(any(), any());
+    }
+
+    @Test
+    void getPublicProfile_WhenETagGivenForMissingUser_ShouldReturnNotFound() {
+        when(appService.getProfileVersion(TEST_EMAIL)).thenReturn(Optional.empty());
+        when(appService.getPublicProfile(TEST_EMAIL)).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = controller.getPublicProfile(TEST_EMAIL, "*");
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void getStats_ShouldReturnStatsPerLink() {
+        var stats = List.of(new LinkStatsDto("https://example.com", 3, 10));
+        when(metricsService.getStats(TEST_EMAIL)).thenReturn(stats);
+
+        ResponseEntity<?> response = controller.getStats(TEST_EMAIL);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
+    }
+
+    @Test
+    void linkClicked_WhenAccepted_ShouldReturnOk() {
+        var request = new MockHttpServletRequest();
+        request.addHeader("User-Agent", "test-agent");
+        request.setRemoteAddr("10.0.0.1");
+        when(metricsService.linkClicked(TEST_EMAIL, "link", "test-agent", "10.0.0.1")).thenReturn(true);
+
+        ResponseEntity<?> response = controller.linkClicked(TEST_EMAIL, "link", request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void linkClicked_WhenQueueIsFull_ShouldReturnServiceUnavailable() {
+        var request = new MockHttpServletRequest();
+        request.addHeader("X-Forwarded-For", "10.0.0.2");
+        when(metricsService.linkClicked(eq(TEST_EMAIL), eq("link"), any(), eq("10.0.0.2"))).thenReturn(false);
+
+        ResponseEntity<?> response = controller.linkClicked(TEST_EMAIL, "link", request);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
 }
@@ -0,0 +1,93 @@
+package linksharing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the embedded container, which enforces the multipart limits that MockMvc does not.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "pics.max-size=256KB")
+class PictureUploadLimitTest {
+
+    private static final int MAX_SIZE = 256 * 1024;
+    private static final String EMAIL = "limit@example.com";
+
+    @TempDir
+    static Path picsDir;
+
+    @DynamicPropertySource
+    static void picsDirectory(DynamicPropertyRegistry registry) {
+        registry.add("pics.directory", picsDir::toString);
+    }
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Test
+    void upload_OfExactlyMaxSize_IsAccepted() {
+        rest.postForEntity("/api/user/register", EMAIL, String.class);
+
+        var response = upload(new byte[MAX_SIZE]);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        var picture = rest.getForEntity("/api/user/{email}/pic", byte[].class, EMAIL);
+        assertEquals(MAX_SIZE, picture.getBody().length);
+    }
+
+    @Test
+    void upload_LargerThanMaxSize_IsRejected() {
+        rest.postForEntity("/api/user/register", EMAIL, String.class);
+
+        var response = upload(new byte[MAX_SIZE + 1]);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
+    @Test
+    void upload_WhenRequestExceedsFramingAllowance_IsRejected() {
+        rest.postForEntity("/api/user/register", EMAIL, String.class);
+
+        var response = upload(new byte[MAX_SIZE], "x".repeat(64 * 1024));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
+    private ResponseEntity<String> upload(byte[] content) {
+        return upload(content, null);
+    }
+
+    private ResponseEntity<String> upload(byte[] content, String extraField) {
+        var partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.IMAGE_JPEG);
+        var picture = new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "pic.jpg";
+            }
+        };
+        var body = new LinkedMultiValueMap<String, Object>();
+        body.add("file", new HttpEntity<>(picture, partHeaders));
+        if (extraField != null) {
+            body.add("extra", extraField);
+        }
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return rest.postForEntity("/api/user/{email}/pic", new HttpEntity<>(body, headers), String.class, EMAIL);
+    }
+}
@@ -0,0 +1,123 @@
+package linksharing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import linksharing.db.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Path;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.metrics.distribution.percentiles-histogram.http.server.requests=true",
+        "management.metrics.distribution.percentiles.http.server.requests=0.5,0.99"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ServerMetricsTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+
+    @TempDir
+    static Path picsDir;
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private MeterRegistry registry;
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void picsDirectory(DynamicPropertyRegistry registry) {
+        registry.add("pics.directory", picsDir::toString);
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteAll();
+    }
+
+    // the registry is shared by the tests of this class, so counts are compared before and after
+    @Test
+    void requests_AreTimedPerEndpointWithOutcome() throws Exception {
+        long notFoundBefore = requestCount("/api/public/{email}", "CLIENT_ERROR");
+        long checkBefore = requestCount("/api/check", "SUCCESS");
+
+        mvc.perform(get("/api/public/{email}", "missing@example.com")).andExpect(status().isNotFound());
+        mvc.perform(get("/api/check")).andExpect(status().isOk());
+
+        assertEquals(notFoundBefore + 1, requestCount("/api/public/{email}", "CLIENT_ERROR"));
+        assertEquals(checkBefore + 1, requestCount("/api/check", "SUCCESS"));
+        var notFound = registry.get("http.server.requests")
+                .tag("uri", "/api/public/{email}")
+                .tag("outcome", "CLIENT_ERROR")
+                .timer();
+        assertEquals("404", notFound.getId().getTag("status"));
+        assertEquals(2, notFound.takeSnapshot().percentileValues().length);
+        assertTrue(notFound.takeSnapshot().histogramCounts().length > 0);
+    }
+
+    @Test
+    void pictureIo_IsTimedPerOperation() throws Exception {
+        mvc.perform(post("/api/user/register").contentType("text/plain").content(TEST_EMAIL))
+                .andExpect(status().isCreated());
+        long savesBefore = picsIoCount("save");
+        long readsBefore = picsIoCount("read");
+
+        mvc.perform(multipart("/api/user/{email}/pic", TEST_EMAIL)
+                        .file(new MockMultipartFile("file", "img.jpg", "image/jpeg", new byte[1024])))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/user/{email}/pic", TEST_EMAIL)).andExpect(status().isOk());
+
+        assertEquals(savesBefore + 1, picsIoCount("save"));
+        assertEquals(readsBefore + 1, picsIoCount("read"));
+        assertTrue(registry.get("pics.io").tag("operation", "save").timer().totalTime(NANOSECONDS) > 0);
+    }
+
+    @Test
+    void repositoryCalls_AreTimed() throws Exception {
+        mvc.perform(get("/api/public/{email}", "missing@example.com")).andExpect(status().isNotFound());
+
+        assertTrue(registry.get("spring.data.repository.invocations")
+                .tag("repository", "UserRepository")
+                .tag("method", "findPublicProfile")
+                .timer().count() > 0);
+    }
+
+    @Test
+    void prometheusEndpoint_ExposesHistogramBuckets() throws Exception {
+        mvc.perform(get("/api/check")).andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")));
+    }
+
+    private long requestCount(String uri, String outcome) {
+        var timer = registry.find("http.server.requests").tag("uri", uri).tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long picsIoCount(String operation) {
+        return registry.get("pics.io").tag("operation", operation).timer().count();
+    }
+}
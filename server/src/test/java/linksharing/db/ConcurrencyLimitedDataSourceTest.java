@@ -0,0 +1,99 @@
+package linksharing.db;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    private final Semaphore permits = new Semaphore(4, true);
+    private ConcurrencyLimitedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new ConcurrencyLimitedDataSource(target, permits, Duration.ofMillis(100));
+    }
+
+    @Test
+    void getConnection_FromManyVirtualThreads_NeverExceedsPermits() throws Exception {
+        var open = new AtomicInteger();
+        var maxOpen = new AtomicInteger();
+        when(target.getConnection()).thenAnswer(invocation -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            var connection = mock(Connection.class);
+            doAnswer(close -> open.decrementAndGet()).when(connection).close();
+            return connection;
+        });
+        var limited = new ConcurrencyLimitedDataSource(target, permits, Duration.ofSeconds(30));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var tasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < 200; i++) {
+                tasks.add(executor.submit(() -> {
+                    try (var connection = limited.getConnection()) {
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            for (var task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        }
+
+        assertTrue(maxOpen.get() <= 4, "max open connections " + maxOpen.get());
+        assertEquals(4, permits.availablePermits());
+    }
+
+    @Test
+    void getConnection_WhenNoPermitBecomesAvailable_TimesOut() throws SQLException {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        for (int i = 0; i < 4; i++) {
+            dataSource.getConnection();
+        }
+
+        assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+    }
+
+    @Test
+    void close_WhenCalledTwice_ReleasesPermitOnce() throws SQLException {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        var connection = dataSource.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertEquals(4, permits.availablePermits());
+    }
+
+    @Test
+    void getConnection_WhenTargetFails_ReleasesPermit() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+        assertEquals(4, permits.availablePermits());
+    }
+}
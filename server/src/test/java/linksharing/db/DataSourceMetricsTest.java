@@ -0,0 +1,27 @@
+package linksharing.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DataSourceMetricsTest {
+
+    @Autowired
+    private MeterRegistry registry;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void connectionPool_PublishesActivePendingAndAcquireTime() {
+        jdbc.queryForObject("select 1", Integer.class);
+
+        assertNotNull(registry.find("hikaricp.connections.active").gauge());
+        assertNotNull(registry.find("hikaricp.connections.pending").gauge());
+        assertTrue(registry.get("hikaricp.connections.acquire").timer().count() > 0);
+    }
+}
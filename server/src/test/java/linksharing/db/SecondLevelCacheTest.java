@@ -0,0 +1,136 @@
+package linksharing.db;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.Cache;
+import java.util.ArrayList;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private LinkRepository linkRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry registry;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setEmail(TEST_EMAIL);
+        user.setFirstName("John");
+        user.setLinks(new ArrayList<>());
+        user = userRepository.save(user);
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void cleanup() {
+        linkRepo.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void findById_AfterWarmUp_IsServedFromCache() {
+        userRepository.findById(TEST_EMAIL);
+        statistics.clear();
+
+        assertEquals("John", userRepository.findById(TEST_EMAIL).get().getFirstName());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics("users").getHitCount());
+    }
+
+    @Test
+    void links_AfterWarmUp_AreServedFromCache() {
+        assertEquals(1, linkCount());
+        statistics.clear();
+
+        assertEquals(1, linkCount());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void links_WhenLinkIsAdded_AreEvicted() {
+        assertEquals(1, linkCount());
+
+        linkRepo.save(new Link(null, "Second", "https://example.com/2", user));
+
+        assertEquals(2, linkCount());
+    }
+
+    @Test
+    void findById_AfterBulkUpdate_IsNotServedStale() {
+        userRepository.findById(TEST_EMAIL);
+
+        userRepository.updateNames(TEST_EMAIL, "Jane", "Smith");
+
+        assertEquals("Jane", userRepository.findById(TEST_EMAIL).get().getFirstName());
+    }
+
+    @Test
+    void findPublicProfile_AfterInsertIfAbsent_IsNotServedStale() {
+        assertTrue(userRepository.findPublicProfile("new@example.com").isEmpty());
+
+        assertTrue(userRepository.insertIfAbsent("new@example.com"));
+
+        assertEquals(1, userRepository.findPublicProfile("new@example.com").size());
+    }
+
+    @Test
+    void statistics_ArePublishedPerRegion() {
+        userRepository.findById(TEST_EMAIL);
+        userRepository.findById(TEST_EMAIL);
+
+        assertFalse(registry.find("hibernate.second.level.cache.requests").tag("region", "users")
+                .functionCounters().isEmpty());
+    }
+
+    @Test
+    void regions_AreSizedFromApplicationConf() {
+        var cacheManager = ((JCacheRegionFactory) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(RegionFactory.class)).getCacheManager();
+
+        assertEquals(OptionalLong.of(100_000), maximumSize(cacheManager.getCache("users")));
+        assertEquals(OptionalLong.of(500_000), maximumSize(cacheManager.getCache("links")));
+        assertEquals(OptionalLong.of(100_000), maximumSize(cacheManager.getCache("user-links")));
+    }
+
+    private static OptionalLong maximumSize(Cache<?, ?> cache) {
+        return cache.getConfiguration(CaffeineConfiguration.class).getMaximumSize();
+    }
+
+    private int linkCount() {
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> userRepository.findById(TEST_EMAIL).get().getLinks().size());
+    }
+}
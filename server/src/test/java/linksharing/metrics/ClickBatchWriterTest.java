@@ -0,0 +1,81 @@
+package linksharing.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class ClickBatchWriterTest {
+
+    @Autowired
+    private ClickBatchWriter writer;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void cleanup() {
+        jdbc.update("delete from metrics");
+    }
+
+    @Test
+    void insert_AssignsConsecutiveIdsFromMetricsSequence() {
+        writer.insert(metrics(120));
+
+        assertEquals(120, jdbc.queryForObject("select count(distinct id) from metrics", Integer.class));
+        // one sequence value per row, none are skipped
+        assertEquals(119, jdbc.queryForObject("select max(id) - min(id) from metrics", Long.class));
+    }
+
+    @Test
+    void insert_SendsRowsAsSingleBatch() throws Exception {
+        var statements = new ArrayList<PreparedStatement>();
+        var dataSource = new DelegatingDataSource(jdbc.getDataSource()) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                var connection = spy(super.getConnection());
+                doAnswer(invocation -> {
+                    var statement = spy((PreparedStatement) invocation.callRealMethod());
+                    statements.add(statement);
+                    return statement;
+                }).when(connection).prepareStatement(anyString());
+                return connection;
+            }
+        };
+
+        new ClickBatchWriter(new JdbcTemplate(dataSource)).insert(metrics(100));
+
+        assertEquals(1, statements.size());
+        var statement = statements.getFirst();
+        verify(statement, times(100)).addBatch();
+        verify(statement).executeBatch();
+        verify(statement, never()).executeUpdate();
+        assertEquals(100, jdbc.queryForObject("select count(*) from metrics", Integer.class));
+    }
+
+    private static List<Metric> metrics(int count) {
+        var metrics = new ArrayList<Metric>(count);
+        for (int i = 0; i < count; i++) {
+            metrics.add(new Metric(null, "test@example.com", "https://example.com/" + i, "127.0.0.1", "agent",
+                    new Timestamp(System.currentTimeMillis())));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,87 @@
+package linksharing.metrics;
+
+import linksharing.dto.LinkStatsDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ClickRollupsTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+    private static final Instant NOW = Instant.parse("2026-10-18T12:30:30Z");
+
+    @Autowired
+    private ClickRollupRepository repo;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private ClickRollups rollups;
+
+    @BeforeEach
+    void setUp() {
+        rollups = new ClickRollups(repo, Clock.fixed(NOW, ZoneOffset.UTC), Duration.ofDays(2), Duration.ofDays(2));
+    }
+
+    @AfterEach
+    void cleanup() {
+        jdbc.update("delete from click_rollup_minute");
+        jdbc.update("delete from click_rollup_hour");
+    }
+
+    @Test
+    void getStats_AfterFlush_ReturnsClicksPerLink() {
+        long now = NOW.toEpochMilli();
+        rollups.record(TEST_EMAIL, "a", now);
+        rollups.record(TEST_EMAIL, "a", now - Duration.ofMinutes(5).toMillis());
+        rollups.record(TEST_EMAIL, "b", now - Duration.ofHours(2).toMillis());
+        rollups.record("other@example.com", "a", now);
+
+        rollups.flush();
+
+        assertEquals(List.of(new LinkStatsDto("a", 2, 2), new LinkStatsDto("b", 0, 1)), rollups.getStats(TEST_EMAIL));
+    }
+
+    @Test
+    void flush_WhenRollupExists_AddsClicks() {
+        long now = NOW.toEpochMilli();
+        rollups.record(TEST_EMAIL, "a", now);
+        rollups.flush();
+        rollups.record(TEST_EMAIL, "a", now);
+        rollups.record(TEST_EMAIL, "a", now);
+        rollups.flush();
+
+        assertEquals(List.of(new LinkStatsDto("a", 3, 3)), rollups.getStats(TEST_EMAIL));
+    }
+
+    @Test
+    void getStats_WhenNoClicks_ReturnsEmpty() {
+        assertTrue(rollups.getStats(TEST_EMAIL).isEmpty());
+    }
+
+    @Test
+    void pruneRollups_DeletesOnlyBucketsPastRetention() {
+        long now = NOW.toEpochMilli();
+        rollups.record(TEST_EMAIL, "a", now - Duration.ofDays(3).toMillis());
+        rollups.record(TEST_EMAIL, "a", now - Duration.ofHours(20).toMillis());
+        rollups.record(TEST_EMAIL, "a", now);
+        rollups.flush();
+
+        rollups.pruneRollups();
+
+        assertEquals(2, jdbc.queryForObject("select count(*) from click_rollup_minute", Integer.class));
+        assertEquals(2, jdbc.queryForObject("select count(*) from click_rollup_hour", Integer.class));
+        assertEquals(List.of(new LinkStatsDto("a", 1, 2)), rollups.getStats(TEST_EMAIL));
+    }
+}
@@ -0,0 +1,80 @@
+package linksharing.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against H2, where partitions are plain tables with the partition names.
+ */
+@SpringBootTest
+class MetricsPartitionManagerTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void cleanup() throws MetaDataAccessException {
+        for (String name : managerAt("2026-10-18", 30, 0).getPartitionNames()) {
+            jdbc.execute("drop table " + name);
+        }
+    }
+
+    @Test
+    void maintain_CreatesPartitionsForTodayAndDaysAhead() throws MetaDataAccessException {
+        var manager = managerAt("2026-10-18", 30, 3);
+
+        manager.maintain();
+
+        var names = manager.getPartitionNames();
+        assertTrue(names.contains("metrics_p20261018"));
+        assertTrue(names.contains("metrics_p20261021"));
+        assertFalse(names.contains("metrics_p20261022"));
+    }
+
+    @Test
+    void maintain_DropsPartitionsPastRetention() throws MetaDataAccessException {
+        managerAt("2026-09-10", 30, 10).maintain();
+        var manager = managerAt("2026-10-18", 30, 0);
+
+        manager.maintain();
+
+        var names = manager.getPartitionNames();
+        assertFalse(names.contains("metrics_p20260910"));
+        assertFalse(names.contains("metrics_p20260917"));
+        assertTrue(names.contains("metrics_p20260918"));
+        assertTrue(names.contains("metrics_p20260920"));
+        assertTrue(names.contains("metrics_p20261018"));
+    }
+
+    @Test
+    void maintain_IsIdempotent() throws MetaDataAccessException {
+        var manager = managerAt("2026-10-18", 30, 2);
+
+        manager.maintain();
+        var firstRun = manager.getPartitionNames();
+        manager.maintain();
+
+        assertEquals(firstRun, manager.getPartitionNames());
+    }
+
+    @Test
+    void partitionName_UsesBasicIsoDate() {
+        assertEquals("metrics_p20260105", MetricsPartitionManager.partitionName(LocalDate.of(2026, 1, 5)));
+    }
+
+    private MetricsPartitionManager managerAt(String day, int retentionDays, int daysAhead) throws MetaDataAccessException {
+        var clock = Clock.fixed(Instant.parse(day + "T12:00:00Z"), ZoneOffset.UTC);
+        return new MetricsPartitionManager(jdbc, clock, retentionDays, daysAhead);
+    }
+}
@@ -0,0 +1,144 @@
+package linksharing.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsServiceTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+
+    @Mock
+    private ClickBatchWriter writer;
+
+    @Mock
+    private ClickRollups rollups;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MetricsService service;
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    void linkClicked_WhenBatchIsFull_FlushesBatch() {
+        service = newService(100, OverflowPolicy.DROP, 3, Duration.ofMinutes(1));
+        service.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.linkClicked(TEST_EMAIL, "link" + i, "agent", "127.0.0.1"));
+        }
+
+        verify(writer, timeout(2000)).insert(argThat(batch -> batch.size() == 3));
+    }
+
+    @Test
+    void linkClicked_WithVirtualThreadFlusher_FlushesBatch() {
+        service = newService(100, OverflowPolicy.DROP, 3, Duration.ofMinutes(1), true);
+        service.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.linkClicked(TEST_EMAIL, "link" + i, "agent", "127.0.0.1"));
+        }
+
+        verify(writer, timeout(2000)).insert(argThat(batch -> batch.size() == 3));
+    }
+
+    @Test
+    void linkClicked_WhenFlushIntervalElapses_FlushesPartialBatch() {
+        service = newService(100, OverflowPolicy.DROP, 100, Duration.ofMillis(50));
+        service.start();
+
+        service.linkClicked(TEST_EMAIL, "link", "agent", "127.0.0.1");
+
+        verify(writer, timeout(2000)).insert(argThat(batch -> batch.size() == 1
+                && batch.get(0).getUserEmail().equals(TEST_EMAIL)
+                && batch.get(0).getClickedAt() != null));
+    }
+
+    @Test
+    void linkClicked_WhenQueueFullAndReject_ReturnsFalse() {
+        service = newService(1, OverflowPolicy.REJECT, 100, Duration.ofMinutes(1));
+
+        assertTrue(service.linkClicked(TEST_EMAIL, "link1", "agent", "127.0.0.1"));
+        assertFalse(service.linkClicked(TEST_EMAIL, "link2", "agent", "127.0.0.1"));
+        assertEquals(1.0, registry.get("clicks.dropped").counter().count());
+        verify(rollups).record(eq(TEST_EMAIL), eq("link1"), anyLong());
+        verify(rollups, never()).record(eq(TEST_EMAIL), eq("link2"), anyLong());
+    }
+
+    @Test
+    void linkClicked_WhenQueueFullAndBlock_RejectsAfterTimeout() {
+        service = newService(1, OverflowPolicy.BLOCK, 100, Duration.ofMinutes(1));
+
+        assertTrue(service.linkClicked(TEST_EMAIL, "link1", "agent", "127.0.0.1"));
+        assertFalse(service.linkClicked(TEST_EMAIL, "link2", "agent", "127.0.0.1"));
+    }
+
+    @Test
+    void linkClicked_WhenQueueFullAndDrop_AcceptsAndCountsDrop() {
+        service = newService(1, OverflowPolicy.DROP, 100, Duration.ofMinutes(1));
+
+        assertTrue(service.linkClicked(TEST_EMAIL, "link1", "agent", "127.0.0.1"));
+        assertTrue(service.linkClicked(TEST_EMAIL, "link2", "agent", "127.0.0.1"));
+        assertEquals(1.0, registry.get("clicks.dropped").counter().count());
+        assertEquals(1.0, registry.get("clicks.queue.depth").gauge().value());
+    }
+
+    @Test
+    void shutdown_DrainsQueuedClicks() throws InterruptedException {
+        service = newService(100, OverflowPolicy.DROP, 100, Duration.ofMinutes(1));
+        service.start();
+        for (int i = 0; i < 5; i++) {
+            service.linkClicked(TEST_EMAIL, "link" + i, "agent", "127.0.0.1");
+        }
+
+        service.shutdown();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Metric>> captor = ArgumentCaptor.forClass(List.class);
+        verify(writer, atLeastOnce()).insert(captor.capture());
+        assertEquals(5, captor.getAllValues().stream().mapToInt(List::size).sum());
+        assertFalse(service.linkClicked(TEST_EMAIL, "late", "agent", "127.0.0.1"));
+    }
+
+    @Test
+    void shutdown_WhenNothingClicked_WritesNothing() throws InterruptedException {
+        service = newService(100, OverflowPolicy.DROP, 100, Duration.ofMillis(10));
+        service.start();
+
+        service.shutdown();
+
+        verifyNoInteractions(writer);
+    }
+
+    private MetricsService newService(int capacity, OverflowPolicy policy, int batchSize, Duration flushInterval) {
+        return newService(capacity, policy, batchSize, flushInterval, false);
+    }
+
+    private MetricsService newService(int capacity, OverflowPolicy policy, int batchSize, Duration flushInterval,
+                                      boolean virtualThreads) {
+        return new MetricsService(writer, rollups, registry, capacity, policy, Duration.ofMillis(20), batchSize,
+                flushInterval, virtualThreads);
+    }
+}
@@ -1,11 +1,15 @@
 package linksharing.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
 import linksharing.db.Link;
 import linksharing.db.LinkRepository;
 import linksharing.db.User;
 import linksharing.db.UserRepository;
+import linksharing.dto.InfoDto;
 import linksharing.dto.LinkDto;
 import linksharing.dto.UserDto;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -13,14 +17,35 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -40,17 +65,38 @@ class AppServiceTest {
     private UserRepository userRepository;
     @Autowired
     private LinkRepository linkRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbc;
 
+    private SimpleMeterRegistry registry;
+    private ProfileCache profileCache;
+    private FileSystemPictureStore pictureStore;
+    private PictureCache pictureCache;
+    private ThumbnailGenerator thumbnails;
     private AppService appService;
 
     @BeforeEach
     void setUp() {
         System.setProperty("pics.directory", tempDir.toString());
-        appService = new AppService(userRepository, linkRepo, tempDir.toString());
+        registry = new SimpleMeterRegistry();
+        profileCache = new ProfileCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        pictureCache = new PictureCache(true, DataSize.ofMegabytes(4), DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+        pictureStore = new FileSystemPictureStore(tempDir.toString());
+        thumbnails = new ThumbnailGenerator(pictureStore, List.of(64, 128), 1, 100, false);
+        var knownUsers = new KnownUsers(userRepository, jdbc, 100, false, 1000, 0.01, new SimpleMeterRegistry());
+        knownUsers.init();
+        appService = new AppService(userRepository, linkRepo, profileCache, knownUsers, pictureStore, pictureCache,
+                thumbnails, DataSize.ofMegabytes(1), registry);
     }
 
     @AfterEach
-    void cleanup() throws IOException {
+    void cleanup() throws IOException, InterruptedException {
+        thumbnails.shutdown();
+        linkRepo.deleteAll();
         userRepository.deleteAll();
     }
 
@@ -67,11 +113,70 @@ class AppServiceTest {
 
     @Test
     void registerUser_CreatesNewUser() {
-        appService.registerUser(TEST_EMAIL);
+        assertTrue(appService.registerUser(TEST_EMAIL));
 
         Optional<User> user = userRepository.findById(TEST_EMAIL);
         assertTrue(user.isPresent());
         assertEquals(TEST_EMAIL, user.get().getEmail());
+        assertNotNull(user.get().getCreatedOn());
+    }
+
+    @Test
+    void registerUser_UsesSingleStatement() {
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        appService.registerUser(TEST_EMAIL);
+
+        // the insert alone, the row is not read first
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(userRepository.existsById(TEST_EMAIL));
+    }
+
+    @Test
+    void registerUser_WhenUserExists_LeavesUserUntouched() {
+        var existing = createTestUser();
+
+        assertFalse(appService.registerUser(TEST_EMAIL));
+
+        var user = userRepository.findById(TEST_EMAIL).get();
+        assertEquals(TEST_FIRST_NAME, user.getFirstName());
+        assertEquals(TEST_IMAGE_URL, user.getImageUrl());
+        assertEquals(existing.getCreatedOn(), user.getCreatedOn());
+    }
+
+    @Test
+    void registerUser_WhenRegisteredConcurrently_CreatesUserOnce() throws Exception {
+        int threads = 8;
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Boolean>>();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return appService.registerUser(TEST_EMAIL);
+                }));
+            }
+            start.countDown();
+            int created = 0;
+            for (var result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    created++;
+                }
+            }
+            assertEquals(1, created);
+        }
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void registerUser_WhenEmailTooLong_FailsInsteadOfReportingExistingUser() {
+        String email = "a".repeat(250) + "@example.com";
+
+        assertThrows(DataIntegrityViolationException.class, () -> appService.registerUser(email));
+
+        assertEquals(0, userRepository.count());
     }
 
     @Test
@@ -79,19 +184,43 @@ class AppServiceTest {
         createTestUser();
         UserDto dto = new UserDto("Jane", "Smith");
 
-        Optional<User> result = appService.updateUser(TEST_EMAIL, dto);
+        boolean updated = appService.updateUser(TEST_EMAIL, dto);
 
-        assertTrue(result.isPresent());
-        User updatedUser = result.get();
+        assertTrue(updated);
+        User updatedUser = userRepository.findById(TEST_EMAIL).get();
         assertEquals("Jane", updatedUser.getFirstName());
         assertEquals("Smith", updatedUser.getLastName());
+        assertEquals(TEST_IMAGE_URL, updatedUser.getImageUrl());
     }
 
     @Test
-    void updateUser_WhenUserDoesNotExist_ReturnsEmpty() {
+    void updateUser_WhenUserDoesNotExist_ReturnsFalse() {
         UserDto dto = new UserDto("Jane", "Smith");
-        Optional<User> result = appService.updateUser(TEST_EMAIL, dto);
-        assertTrue(result.isEmpty());
+        assertFalse(appService.updateUser(TEST_EMAIL, dto));
+    }
+
+    @Test
+    void updateUser_UsesSingleUpdateWithoutReadingTheUser() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        appService.updateUser(TEST_EMAIL, new UserDto("Jane", "Smith"));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void updateUser_InvalidatesCachedProfile() {
+        createTestUser();
+        appService.getPublicProfile(TEST_EMAIL);
+
+        appService.updateUser(TEST_EMAIL, new UserDto("Jane", "Smith"));
+
+        assertEquals("Jane", appService.getPublicProfile(TEST_EMAIL).get().profile().firstName());
     }
 
     @Test
@@ -104,12 +233,11 @@ class AppServiceTest {
                 "test image content".getBytes()
         );
 
-        Optional<User> result = appService.updateProfilePicture(TEST_EMAIL, file);
+        assertTrue(appService.updateProfilePicture(TEST_EMAIL, file));
 
-        assertTrue(result.isPresent());
-        User updatedUser = result.get();
-        assertEquals("/api/user/" + TEST_EMAIL + "/pic", updatedUser.getImageUrl());
-        assertTrue(Files.exists(tempDir.resolve(TEST_EMAIL + ".jpg")));
+        assertEquals("/api/user/" + TEST_EMAIL + "/pic", userRepository.findById(TEST_EMAIL).orElseThrow().getImageUrl());
+        String key = userRepository.findPictureKey(TEST_EMAIL).orElseThrow();
+        assertArrayEquals("test image content".getBytes(), Files.readAllBytes(pictureStore.path(key)));
     }
 
     @Test
@@ -121,24 +249,211 @@ class AppServiceTest {
                 "test image content".getBytes()
         );
 
-        Optional<User> result = appService.updateProfilePicture(TEST_EMAIL, file);
-        assertTrue(result.isEmpty());
+        assertFalse(appService.updateProfilePicture(TEST_EMAIL, file));
+        assertTrue(listFiles().isEmpty());
+    }
+
+    @Test
+    void updateProfilePicture_KeepsConcurrentNameChange() throws IOException {
+        createTestUser();
+        var file = new MockMultipartFile("file", "pic.jpg", "image/jpeg", "test image content".getBytes()) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                // the names are changed while the upload is being stored
+                appService.updateUser(TEST_EMAIL, new UserDto("Jane", "Smith"));
+                return super.getInputStream();
+            }
+        };
+
+        assertTrue(appService.updateProfilePicture(TEST_EMAIL, file));
+
+        var profile = appService.getPublicProfile(TEST_EMAIL).orElseThrow();
+        assertEquals("Jane", profile.profile().firstName());
+        assertEquals(TEST_IMAGE_URL, profile.profile().imageUrl());
+        assertEquals(2, profile.version());
+    }
+
+    @Test
+    void updateProfilePicture_WhenTooLarge_KeepsOldPicture() throws IOException {
+        createTestUser();
+        String oldKey = storePicture("old".getBytes());
+        MultipartFile file = new MockMultipartFile("file", "pic.jpg", "image/jpeg", new byte[1024 * 1024 + 1]);
+
+        assertThrows(PictureTooLargeException.class, () -> appService.updateProfilePicture(TEST_EMAIL, file));
+
+        assertEquals(oldKey, userRepository.findPictureKey(TEST_EMAIL).orElseThrow());
+        assertArrayEquals("old".getBytes(), appService.getProfilePicture(TEST_EMAIL).content().getContentAsByteArray());
+        assertEquals(List.of(pictureStore.path(oldKey)), listFiles());
+    }
+
+    @Test
+    void updateProfilePicture_WhenSameContentIsUploadedTwice_StoresItOnce() throws IOException {
+        createTestUser();
+        userRepository.save(testUser("other@example.com"));
+        byte[] content = "test image content".getBytes();
+
+        appService.updateProfilePicture(TEST_EMAIL, new MockMultipartFile("file", "pic.jpg", "image/jpeg", content));
+        appService.updateProfilePicture("other@example.com", new MockMultipartFile("file", "pic.jpg", "image/jpeg", content));
+
+        assertEquals(userRepository.findPictureKey(TEST_EMAIL), userRepository.findPictureKey("other@example.com"));
+        assertEquals(1, listFiles().size());
+    }
+
+    @Test
+    void updateProfilePicture_ConcurrentUploadsAndReads_NeverSeePartialPicture() throws Exception {
+        createTestUser();
+        int size = 256 * 1024;
+        int writers = 4;
+        int uploadsPerWriter = 10;
+        int readers = 4;
+        var executor = Executors.newFixedThreadPool(writers + readers);
+        var uploadsDone = new AtomicBoolean();
+        var failures = new ConcurrentLinkedQueue<String>();
+        try {
+            var uploads = new ArrayList<Future<?>>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                uploads.add(executor.submit(() -> {
+                    for (int i = 0; i < uploadsPerWriter; i++) {
+                        var content = new byte[size];
+                        Arrays.fill(content, (byte) (writer * uploadsPerWriter + i + 1));
+                        appService.updateProfilePicture(TEST_EMAIL,
+                                new MockMultipartFile("file", "pic.jpg", "image/jpeg", content));
+                    }
+                    return null;
+                }));
+            }
+            var reads = new ArrayList<Future<?>>();
+            for (int r = 0; r < readers; r++) {
+                reads.add(executor.submit(() -> {
+                    while (!uploadsDone.get()) {
+                        Picture picture = appService.getProfilePicture(TEST_EMAIL);
+                        if (picture == null) {
+                            continue;
+                        }
+                        byte[] bytes = picture.content().getContentAsByteArray();
+                        if (bytes.length != size || bytes[0] == 0 || !isFilledWith(bytes, bytes[0])) {
+                            failures.add("partial picture of " + bytes.length + " bytes");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (var upload : uploads) {
+                upload.get(30, TimeUnit.SECONDS);
+            }
+            uploadsDone.set(true);
+            for (var read : reads) {
+                read.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(writers * uploadsPerWriter, listFiles().size());
+        assertTrue(listFiles().stream().noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        assertEquals(TEST_IMAGE_URL, userRepository.findById(TEST_EMAIL).orElseThrow().getImageUrl());
     }
 
     @Test
     void getProfilePicture_WhenPictureExists_ReturnsPictureBytes() throws IOException {
-        // Create test picture file
-        Path picPath = tempDir.resolve(TEST_EMAIL + ".jpg");
+        createTestUser();
         byte[] testContent = "test image content".getBytes();
-        Files.write(picPath, testContent);
+        String key = storePicture(testContent);
+
+        Picture result = appService.getProfilePicture(TEST_EMAIL);
+        assertEquals(testContent.length, result.length());
+        assertEquals(Files.getLastModifiedTime(pictureStore.path(key)).toMillis(), result.lastModified());
+        assertArrayEquals(testContent, result.content().getContentAsByteArray());
+    }
 
-        byte[] result = appService.getProfilePicture(TEST_EMAIL);
-        assertArrayEquals(testContent, result);
+    @Test
+    void getProfilePicture_AfterUpload_ServesNewPictureInsteadOfCachedOne() throws IOException {
+        createTestUser();
+        storePicture("old".getBytes());
+        appService.getProfilePicture(TEST_EMAIL);
+
+        appService.updateProfilePicture(TEST_EMAIL,
+                new MockMultipartFile("file", "pic.jpg", "image/jpeg", "new".getBytes()));
+
+        assertArrayEquals("new".getBytes(), appService.getProfilePicture(TEST_EMAIL).content().getContentAsByteArray());
+    }
+
+    @Test
+    void pictureIo_IsTimedPerOperationOnCacheMisses() throws IOException {
+        createTestUser();
+        appService.updateProfilePicture(TEST_EMAIL,
+                new MockMultipartFile("file", "pic.jpg", "image/jpeg", "content".getBytes()));
+
+        appService.getProfilePicture(TEST_EMAIL);
+        appService.getProfilePicture(TEST_EMAIL);
+
+        assertEquals(1, registry.get("pics.io").tag("operation", "save").timer().count());
+        // the second read is served by the picture cache
+        assertEquals(1, registry.get("pics.io").tag("operation", "read").timer().count());
+    }
+
+    @Test
+    void getProfilePicture_WithSize_FallsBackToOriginalUntilThumbnailExists() throws IOException {
+        createTestUser();
+        var bytes = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "jpg", bytes);
+        String key = storePicture(bytes.toByteArray());
+
+        assertEquals(bytes.size(), appService.getProfilePicture(TEST_EMAIL, 64).length());
+
+        thumbnails.generate(key);
+
+        Picture thumbnail = appService.getProfilePicture(TEST_EMAIL, 64);
+        BufferedImage image = ImageIO.read(thumbnail.content().getInputStream());
+        assertEquals(64, image.getWidth());
+        assertEquals(32, image.getHeight());
+    }
+
+    @Test
+    void updateProfilePicture_RendersThumbnailsInBackground() throws Exception {
+        createTestUser();
+        var bytes = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), "jpg", bytes);
+
+        appService.updateProfilePicture(TEST_EMAIL,
+                new MockMultipartFile("file", "pic.jpg", "image/jpeg", bytes.toByteArray()));
+
+        String key = userRepository.findPictureKey(TEST_EMAIL).orElseThrow();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pictureStore.getVariant(key, "128") == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Picture thumbnail = pictureStore.getVariant(key, "128");
+        assertEquals(128, ImageIO.read(thumbnail.content().getInputStream()).getWidth());
+    }
+
+    @Test
+    void getProfilePicture_WhenPictureExists_StreamsWithoutBufferingWholeFile() throws IOException {
+        int size = 8 * 1024 * 1024;
+        createTestUser();
+        storePicture(new byte[size]);
+        // the first lookup also prepares the query, that is not part of the streaming cost
+        appService.getProfilePicture(TEST_EMAIL);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        Picture result = appService.getProfilePicture(TEST_EMAIL);
+        long copied;
+        try (var in = result.content().getInputStream()) {
+            copied = in.transferTo(OutputStream.nullOutputStream());
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(size, copied);
+        assertTrue(allocated < size / 16, "allocated " + allocated + " bytes to stream " + size + " bytes");
     }
 
     @Test
     void getProfilePicture_WhenPictureDoesNotExist_ReturnsNull() throws IOException {
-        byte[] result = appService.getProfilePicture(TEST_EMAIL);
+        Picture result = appService.getProfilePicture(TEST_EMAIL);
         assertNull(result);
     }
 
@@ -175,7 +490,7 @@ class AppServiceTest {
         var result = appService.getPublicProfile(TEST_EMAIL);
 
         assertTrue(result.isPresent());
-        var profile = result.get();
+        var profile = result.get().profile();
         assertEquals(TEST_EMAIL, profile.email());
         assertEquals(TEST_FIRST_NAME, profile.firstName());
         assertEquals(TEST_LAST_NAME, profile.lastName());
@@ -184,19 +499,236 @@ class AppServiceTest {
         assertEquals("https://example.com", profile.links().get(0).url());
     }
 
+    @Test
+    void deleteLinks_RemovesAllLinksOfUser() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        linkRepo.save(new Link(null, "Second", "https://example.com/2", user));
+
+        appService.deleteLinks(TEST_EMAIL);
+
+        assertTrue(appService.getPublicProfile(TEST_EMAIL).get().profile().links().isEmpty());
+    }
+
+    @Test
+    void replaceLinks_WhenUserExists_ReplacesLinksWithBatchedInsert() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "Old", "https://example.com/old", user));
+        var newLinks = List.of(
+                new LinkDto("One", "https://example.com/1"),
+                new LinkDto("Two", "https://example.com/2"),
+                new LinkDto("Three", "https://example.com/3"),
+                new LinkDto("Four", "https://example.com/4"),
+                new LinkDto("Five", "https://example.com/5")
+        );
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        boolean replaced = new TransactionTemplate(transactionManager)
+                .execute(status -> appService.replaceLinks(TEST_EMAIL, newLinks));
+
+        assertTrue(replaced);
+        // exists check, bulk delete, sequence call, one insert batch and the version bump
+        assertTrue(statistics.getPrepareStatementCount() <= 5, "statements: " + statistics.getPrepareStatementCount());
+        var profile = appService.getPublicProfile(TEST_EMAIL).get().profile();
+        assertEquals(newLinks, profile.links());
+    }
+
+    @Test
+    void replaceLinks_WhenUserDoesNotExist_ReturnsFalse() {
+        assertFalse(appService.replaceLinks(TEST_EMAIL, List.of(new LinkDto("One", "https://example.com/1"))));
+    }
+
+    @Test
+    void getPublicProfile_LoadsUserAndLinksWithSingleStatement() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        linkRepo.save(new Link(null, "Second", "https://example.com/2", user));
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var result = appService.getPublicProfile(TEST_EMAIL);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(result.isPresent());
+        var profile = result.get().profile();
+        assertEquals(TEST_FIRST_NAME, profile.firstName());
+        assertEquals(2, profile.links().size());
+        assertEquals("First", profile.links().get(0).title());
+        assertEquals("https://example.com/2", profile.links().get(1).url());
+    }
+
+    @Test
+    void getPublicProfile_AfterWarmUp_IsServedFromQueryCache() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        appService.getPublicProfile(TEST_EMAIL);
+        profileCache.invalidate(TEST_EMAIL);
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        for (int i = 0; i < 10; i++) {
+            profileCache.invalidate(TEST_EMAIL);
+            assertEquals(1, appService.getPublicProfile(TEST_EMAIL).get().profile().links().size());
+        }
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(10, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void getPublicProfile_AfterAddLink_IsNotServedStaleFromQueryCache() {
+        createTestUser();
+        appService.getPublicProfile(TEST_EMAIL);
+
+        appService.addLink(TEST_EMAIL, new LinkDto("First", "https://example.com/1"));
+
+        assertEquals(1, appService.getPublicProfile(TEST_EMAIL).get().profile().links().size());
+    }
+
+    @Test
+    void getPublicProfile_WhenUserHasNoLinks_ReturnsEmptyLinks() {
+        createTestUser();
+
+        var result = appService.getPublicProfile(TEST_EMAIL);
+
+        assertTrue(result.isPresent());
+        assertTrue(result.get().profile().links().isEmpty());
+    }
+
     @Test
     void getPublicProfile_WhenUserDoesNotExist_ReturnsEmpty() {
         var result = appService.getPublicProfile(TEST_EMAIL);
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void getPublicProfiles_LoadsUncachedProfilesWithSingleStatement() {
+        User first = testUser("first@example.com");
+        User second = testUser("second@example.com");
+        User cached = testUser("cached@example.com");
+        userRepository.saveAll(List.of(first, second, cached));
+        linkRepo.save(new Link(null, "One", "https://example.com/1", first));
+        linkRepo.save(new Link(null, "Two", "https://example.com/2", first));
+        appService.getPublicProfile("cached@example.com");
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var profiles = new ArrayList<InfoDto>();
+        appService.getPublicProfiles(
+                List.of("first@example.com", "cached@example.com", "unknown@example.com", "second@example.com", "first@example.com"),
+                profile -> profiles.add(profile.profile()));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(List.of("cached@example.com", "first@example.com", "second@example.com"),
+                profiles.stream().map(InfoDto::email).toList());
+        assertEquals(List.of(new LinkDto("One", "https://example.com/1"), new LinkDto("Two", "https://example.com/2")),
+                profiles.get(1).links());
+        assertTrue(profiles.get(2).links().isEmpty());
+    }
+
+    @Test
+    void getPublicProfiles_WhenAllCached_DoesNotQuery() {
+        createTestUser();
+        appService.getPublicProfile(TEST_EMAIL);
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var profiles = new ArrayList<PublicProfile>();
+        appService.getPublicProfiles(List.of(TEST_EMAIL), profiles::add);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, profiles.size());
+    }
+
+    @Test
+    void profileVersion_IsBumpedByEveryChange() {
+        appService.registerUser(TEST_EMAIL);
+        long registered = appService.getPublicProfile(TEST_EMAIL).get().version();
+
+        appService.updateUser(TEST_EMAIL, new UserDto(TEST_FIRST_NAME, TEST_LAST_NAME));
+        long updated = appService.getPublicProfile(TEST_EMAIL).get().version();
+        appService.addLink(TEST_EMAIL, new LinkDto("One", "https://example.com/1"));
+        long linkAdded = appService.getPublicProfile(TEST_EMAIL).get().version();
+        appService.replaceLinks(TEST_EMAIL, List.of(new LinkDto("Two", "https://example.com/2")));
+        long linksReplaced = appService.getPublicProfile(TEST_EMAIL).get().version();
+        appService.deleteLinks(TEST_EMAIL);
+        long linksDeleted = appService.getPublicProfile(TEST_EMAIL).get().version();
+
+        assertTrue(registered < updated);
+        assertTrue(updated < linkAdded);
+        assertTrue(linkAdded < linksReplaced);
+        assertTrue(linksReplaced < linksDeleted);
+        assertEquals(Optional.of(linksDeleted), appService.getProfileVersion(TEST_EMAIL));
+    }
+
+    @Test
+    void profileVersion_IsNotResetBySavingTheEntity() {
+        appService.registerUser(TEST_EMAIL);
+        appService.updateUser(TEST_EMAIL, new UserDto(TEST_FIRST_NAME, TEST_LAST_NAME));
+        long version = appService.getProfileVersion(TEST_EMAIL).get();
+
+        var user = userRepository.findById(TEST_EMAIL).get();
+        user.setProfileVersion(0);
+        userRepository.save(user);
+
+        assertEquals(version, userRepository.findProfileVersion(TEST_EMAIL).get());
+    }
+
+    @Test
+    void getProfileVersion_DoesNotLoadTheProfile() {
+        User user = createTestUser();
+        linkRepo.save(new Link(null, "First", "https://example.com/1", user));
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var version = appService.getProfileVersion(TEST_EMAIL);
+
+        assertTrue(version.isPresent());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void getProfileVersion_WhenUserDoesNotExist_ReturnsEmpty() {
+        assertTrue(appService.getProfileVersion(TEST_EMAIL).isEmpty());
+    }
+
+    private String storePicture(byte[] content) throws IOException {
+        String key = pictureStore.save(new ByteArrayInputStream(content), Long.MAX_VALUE);
+        userRepository.updatePicture(TEST_EMAIL, key, TEST_IMAGE_URL);
+        return key;
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static boolean isFilledWith(byte[] bytes, byte value) {
+        for (byte b : bytes) {
+            if (b != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private User createTestUser() {
+        return userRepository.save(testUser(TEST_EMAIL));
+    }
+
+    private static User testUser(String email) {
         User user = new User();
-        user.setEmail(TEST_EMAIL);
+        user.setEmail(email);
         user.setFirstName(TEST_FIRST_NAME);
         user.setLastName(TEST_LAST_NAME);
         user.setImageUrl(TEST_IMAGE_URL);
         user.setLinks(new ArrayList<>());
-        return userRepository.save(user);
+        return user;
     }
 }
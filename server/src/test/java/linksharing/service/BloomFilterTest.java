@@ -0,0 +1,59 @@
+package linksharing.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_HasNoFalseNegatives() {
+        var filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"), "user" + i);
+        }
+    }
+
+    @Test
+    void mightContain_KeepsFalsePositiveRateNearConfiguredRate() {
+        var filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain("other" + i + "@example.com"))
+                .count();
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void add_FromManyThreads_LosesNoBits() throws InterruptedException {
+        var filter = new BloomFilter(50_000, 0.01);
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                executor.submit(() -> {
+                    for (int i = thread; i < 50_000; i += 8) {
+                        filter.add("user" + i + "@example.com");
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"), "user" + i);
+        }
+    }
+}
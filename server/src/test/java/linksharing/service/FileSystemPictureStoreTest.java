@@ -0,0 +1,108 @@
+package linksharing.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemPictureStoreTest {
+
+    private static final byte[] CONTENT = "test image content".getBytes();
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemPictureStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemPictureStore(tempDir.toString());
+    }
+
+    @Test
+    void save_StoresContentUnderShardedSha256Path() throws Exception {
+        String key = save(CONTENT);
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT)), key);
+        Path expected = tempDir.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key + ".jpg");
+        assertArrayEquals(CONTENT, Files.readAllBytes(expected));
+        assertArrayEquals(CONTENT, store.get(key).content().getContentAsByteArray());
+    }
+
+    @Test
+    void save_WhenContentIsAlreadyStored_KeepsSingleCopy() throws IOException {
+        String first = save(CONTENT);
+        String second = save(CONTENT);
+
+        assertEquals(first, second);
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void save_WhenTooLarge_StoresNothing() throws IOException {
+        assertThrows(PictureTooLargeException.class,
+                () -> store.save(new ByteArrayInputStream(new byte[1025]), 1024));
+
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void get_WhenNothingStored_ReturnsNull() throws NoSuchAlgorithmException, IOException {
+        String key = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+
+        assertNull(store.get(key));
+    }
+
+    @Test
+    void get_WithInvalidKey_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> store.get("../../etc/passwd"));
+    }
+
+    @Test
+    void get_SameSizedPicturesWrittenAtOnce_HaveDifferentETags() throws IOException {
+        String first = save("picture 1".getBytes());
+        String second = save("picture 2".getBytes());
+        Files.setLastModifiedTime(store.path(second), Files.getLastModifiedTime(store.path(first)));
+
+        assertEquals("\"" + first + "\"", store.get(first).etag());
+        assertNotEquals(store.get(first).etag(), store.get(second).etag());
+    }
+
+    @Test
+    void getVariant_ETagIncludesVariant() throws IOException {
+        String key = save(CONTENT);
+        store.saveVariant(key, "64", "thumbnail".getBytes());
+
+        assertEquals("\"" + key + ".64\"", store.getVariant(key, "64").etag());
+    }
+
+    @Test
+    void saveVariant_StoresVariantNextToPicture() throws IOException {
+        String key = save(CONTENT);
+
+        store.saveVariant(key, "64", "thumbnail".getBytes());
+
+        assertArrayEquals("thumbnail".getBytes(), store.getVariant(key, "64").content().getContentAsByteArray());
+        assertTrue(Files.exists(store.path(key).resolveSibling(key + ".64.jpg")));
+        assertNull(store.getVariant(key, "128"));
+    }
+
+    private String save(byte[] content) throws IOException {
+        return store.save(new ByteArrayInputStream(content), Long.MAX_VALUE);
+    }
+
+    private long countFiles() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package linksharing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import linksharing.db.User;
+import linksharing.db.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class KnownUsersTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void exists_WithFilter_HasNoFalseNegatives() {
+        saveUsers(0, 1_000);
+        var knownUsers = newKnownUsers(true);
+        knownUsers.init();
+        for (int i = 1_000; i < 1_100; i++) {
+            knownUsers.registering(email(i));
+            userRepository.save(user(email(i)));
+        }
+
+        for (int i = 0; i < 1_100; i++) {
+            assertTrue(knownUsers.exists(email(i)), email(i));
+        }
+        assertFalse(knownUsers.exists("unknown@example.com"));
+    }
+
+    @Test
+    void exists_WhenUserWasFound_IsAnsweredFromCache() {
+        saveUsers(0, 1);
+        var knownUsers = newKnownUsers(false);
+        knownUsers.init();
+
+        assertTrue(knownUsers.exists(email(0)));
+        assertTrue(knownUsers.exists(email(0)));
+
+        assertEquals(1.0, checks("db"));
+        assertEquals(1.0, checks("cache"));
+    }
+
+    @Test
+    void exists_WhenUserIsUnknown_IsNotCached() {
+        var knownUsers = newKnownUsers(false);
+        knownUsers.init();
+
+        assertFalse(knownUsers.exists(email(0)));
+        saveUsers(0, 1);
+
+        assertTrue(knownUsers.exists(email(0)));
+    }
+
+    /**
+     * A client checks its email before every cycle, unknown emails register once. Compares the queries
+     * sent with and without the membership layer.
+     */
+    @Test
+    void exists_AvoidsMostQueriesForRepeatedChecks() {
+        saveUsers(0, 500);
+        var knownUsers = newKnownUsers(true);
+        knownUsers.init();
+
+        int checks = 0;
+        for (int cycle = 0; cycle < 20; cycle++) {
+            for (int i = 0; i < 1_000; i++) {
+                knownUsers.exists(email(i));
+                checks++;
+            }
+        }
+
+        double queries = checks("db");
+        double avoided = 1 - queries / checks;
+        // one query per existing user, plus the rare false positives of the filter for the unknown ones
+        assertTrue(queries < 550, "queries: " + queries);
+        assertTrue(avoided > 0.97, String.format("%d existence checks, %.0f queries (%.1f%% avoided)",
+                checks, queries, 100 * avoided));
+        assertTrue(checks("filter") >= 20 * 450, "filtered: " + checks("filter"));
+    }
+
+    private KnownUsers newKnownUsers(boolean filter) {
+        return new KnownUsers(userRepository, jdbc, 10_000, filter, 10_000, 0.01, registry);
+    }
+
+    private double checks(String source) {
+        return registry.get("users.exists.checks").tag("source", source).counter().count();
+    }
+
+    private void saveUsers(int from, int to) {
+        var users = new ArrayList<User>();
+        IntStream.range(from, to).forEach(i -> users.add(user(email(i))));
+        userRepository.saveAll(users);
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    private static User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        return user;
+    }
+}
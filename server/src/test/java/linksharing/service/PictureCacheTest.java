@@ -0,0 +1,97 @@
+package linksharing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PictureCacheTest {
+
+    private static final String TEST_KEY = "key";
+
+    private SimpleMeterRegistry registry;
+    private PictureCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new PictureCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16), registry);
+    }
+
+    @Test
+    void get_WhenCached_ServesBytesWithoutLoading() throws IOException {
+        cache.get(TEST_KEY, () -> load("test image content".getBytes()));
+
+        Picture picture = cache.get(TEST_KEY, () -> load("test image content".getBytes()));
+
+        assertArrayEquals("test image content".getBytes(), picture.content().getContentAsByteArray());
+        assertEquals(18, picture.length());
+        assertEquals(1, loads.get());
+        assertEquals(0.5, registry.get("pics.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void get_KeepsResidentBytesWithinBudget() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            cache.get("key" + i, () -> load(new byte[8 * 1024]));
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.residentBytes() <= 64 * 1024);
+        assertTrue(cache.residentBytes() > 0);
+        assertEquals((double) cache.residentBytes(), registry.get("pics.cache.resident.bytes").gauge().value());
+    }
+
+    @Test
+    void get_WhenPictureIsLargerThanEntryLimit_ReturnsLoadedPicture() throws IOException {
+        Picture large = load(new byte[16 * 1024 + 1]);
+
+        assertSame(large, cache.get(TEST_KEY, () -> large));
+        assertEquals(0, cache.residentBytes());
+    }
+
+    @Test
+    void get_WhenThereIsNoPicture_ReturnsNull() throws IOException {
+        assertNull(cache.get(TEST_KEY, () -> null));
+    }
+
+    @Test
+    void get_WhenDisabled_AlwaysLoads() throws IOException {
+        var disabled = new PictureCache(false, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16), registry);
+
+        disabled.get(TEST_KEY, () -> load("test".getBytes()));
+        disabled.get(TEST_KEY, () -> load("test".getBytes()));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_WhenLoaderFails_ThrowsIOException() {
+        assertThrows(IOException.class, () -> cache.get(TEST_KEY, () -> {
+            throw new IOException("disk error");
+        }));
+    }
+
+    @Test
+    void content_SupportsRangeReadsBySkipping() throws IOException {
+        Picture picture = cache.get(TEST_KEY, () -> load("0123456789".getBytes()));
+
+        try (var in = picture.content().getInputStream()) {
+            assertEquals(4, in.skip(4));
+            assertArrayEquals("456".getBytes(), in.readNBytes(3));
+        }
+        assertArrayEquals("0123456789".getBytes(), picture.content().getContentAsByteArray());
+    }
+
+    private Picture load(byte[] content) {
+        loads.incrementAndGet();
+        return new Picture("key", new ByteArrayResource(content), content.length, 1_700_000_000_000L);
+    }
+}
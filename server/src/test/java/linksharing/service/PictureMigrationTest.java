@@ -0,0 +1,149 @@
+package linksharing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import linksharing.db.User;
+import linksharing.db.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PictureMigrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private ProfileCache profileCache;
+    private FileSystemPictureStore store;
+    private ThumbnailGenerator thumbnails;
+    private PictureMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        profileCache = new ProfileCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        store = new FileSystemPictureStore(tempDir.toString());
+        thumbnails = new ThumbnailGenerator(store, List.of(64), 1, 100, false);
+        migration = new PictureMigration(userRepository, profileCache, store, thumbnails, tempDir.toString(), 4, true);
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        thumbnails.shutdown();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void migrate_MovesFlatPicturesIntoStore() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            createUser("user" + i + "@example.com");
+            Files.write(tempDir.resolve("user" + i + "@example.com.jpg"), ("picture " + i).getBytes());
+        }
+        Files.createDirectories(tempDir.resolve("thumbs/64"));
+        Files.write(tempDir.resolve("thumbs/64/user0@example.com.jpg"), "old thumbnail".getBytes());
+
+        var result = migration.migrate();
+
+        assertEquals(new PictureMigration.Result(20, 0, 0), result);
+        for (int i = 0; i < 20; i++) {
+            String email = "user" + i + "@example.com";
+            assertFalse(Files.exists(tempDir.resolve(email + ".jpg")));
+            String key = userRepository.findPictureKey(email).orElseThrow();
+            assertArrayEquals(("picture " + i).getBytes(), store.get(key).content().getContentAsByteArray());
+            assertEquals("/api/user/" + email + "/pic", userRepository.findById(email).orElseThrow().getImageUrl());
+        }
+        assertFalse(Files.exists(tempDir.resolve("thumbs/64/user0@example.com.jpg")));
+    }
+
+    @Test
+    void migrate_RendersThumbnailsOfAllPictures() throws Exception {
+        // more pictures than the thumbnail queue holds
+        for (int i = 0; i < 150; i++) {
+            createUser("user" + i + "@example.com");
+            var image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, i);
+            ImageIO.write(image, "jpg", tempDir.resolve("user" + i + "@example.com.jpg").toFile());
+        }
+
+        migration.migrate();
+
+        for (int i = 0; i < 150; i++) {
+            String key = userRepository.findPictureKey("user" + i + "@example.com").orElseThrow();
+            assertNotNull(store.getVariant(key, ThumbnailGenerator.variant(64)));
+        }
+    }
+
+    @Test
+    void migrate_InvalidatesCachedProfile() throws Exception {
+        createUser("user@example.com");
+        profileCache.get("user@example.com", email -> Optional.of(new PublicProfile(null, 0)));
+        Files.write(tempDir.resolve("user@example.com.jpg"), "picture".getBytes());
+
+        migration.migrate();
+
+        assertTrue(profileCache.getIfPresent("user@example.com").isEmpty());
+    }
+
+    @Test
+    void migrate_WhenUserDoesNotExist_LeavesFileInPlace() throws Exception {
+        Path orphan = Files.write(tempDir.resolve("unknown@example.com.jpg"), "picture".getBytes());
+
+        var result = migration.migrate();
+
+        assertEquals(new PictureMigration.Result(0, 1, 0), result);
+        assertTrue(Files.exists(orphan));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void migrate_WhenRunAgain_HasNothingToDo() throws Exception {
+        createUser("user@example.com");
+        Files.write(tempDir.resolve("user@example.com.jpg"), "picture".getBytes());
+        migration.migrate();
+
+        assertEquals(new PictureMigration.Result(0, 0, 0), migration.migrate());
+    }
+
+    @Test
+    void migrate_WhenUserUploadedNewPicture_KeepsIt() throws Exception {
+        createUser("user@example.com");
+        String newKey = store.save(new ByteArrayInputStream("new picture".getBytes()), Long.MAX_VALUE);
+        userRepository.updatePicture("user@example.com", newKey, "/api/user/user@example.com/pic");
+        Path old = Files.write(tempDir.resolve("user@example.com.jpg"), "old picture".getBytes());
+
+        var result = migration.migrate();
+
+        assertEquals(new PictureMigration.Result(0, 1, 0), result);
+        assertEquals(newKey, userRepository.findPictureKey("user@example.com").orElseThrow());
+        assertFalse(Files.exists(old));
+    }
+
+    private void createUser(String email) {
+        var user = new User();
+        user.setEmail(email);
+        userRepository.save(user);
+    }
+
+    private long countFiles() throws IOException {
+        try (var files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package linksharing.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import linksharing.dto.InfoDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileCacheTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+
+    private SimpleMeterRegistry registry;
+    private ProfileCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new ProfileCache(100, Duration.ofMinutes(1), registry);
+    }
+
+    @Test
+    void get_WhenCached_DoesNotCallLoader() {
+        cache.get(TEST_EMAIL, this::load);
+        var result = cache.get(TEST_EMAIL, this::load);
+
+        assertTrue(result.isPresent());
+        assertEquals(1, loads.get());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_AfterInvalidate_ReloadsProfile() {
+        cache.get(TEST_EMAIL, this::load);
+        cache.invalidate(TEST_EMAIL);
+        cache.get(TEST_EMAIL, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_WhenUserDoesNotExist_IsNotCached() {
+        assertTrue(cache.get(TEST_EMAIL, email -> Optional.empty()).isEmpty());
+
+        var result = cache.get(TEST_EMAIL, this::load);
+
+        assertTrue(result.isPresent());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getIfPresent_DoesNotLoad() {
+        assertTrue(cache.getIfPresent(TEST_EMAIL).isEmpty());
+        cache.get(TEST_EMAIL, this::load);
+
+        assertEquals(Optional.of(7L), cache.getIfPresent(TEST_EMAIL).map(PublicProfile::version));
+        assertEquals(1, loads.get());
+    }
+
+    private Optional<PublicProfile> load(String email) {
+        loads.incrementAndGet();
+        return Optional.of(new PublicProfile(new InfoDto(email, "John", "Doe", null, List.of()), 7));
+    }
+}
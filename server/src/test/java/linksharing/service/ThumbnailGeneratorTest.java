@@ -0,0 +1,83 @@
+package linksharing.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemPictureStore store;
+    private ThumbnailGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemPictureStore(tempDir.toString());
+        generator = new ThumbnailGenerator(store, List.of(64, 256), 1, 10, false);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        generator.shutdown();
+    }
+
+    @Test
+    void scale_KeepsAspectRatioWithinBox() {
+        var thumbnail = ThumbnailGenerator.scale(new BufferedImage(200, 400, BufferedImage.TYPE_INT_RGB), 64);
+
+        assertEquals(32, thumbnail.getWidth());
+        assertEquals(64, thumbnail.getHeight());
+    }
+
+    @Test
+    void scale_DoesNotUpscaleSmallPictures() {
+        var thumbnail = ThumbnailGenerator.scale(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), 256);
+
+        assertEquals(100, thumbnail.getWidth());
+        assertEquals(50, thumbnail.getHeight());
+    }
+
+    @Test
+    void generate_StoresOneVariantPerSize() throws IOException {
+        String key = storeJpeg(512, 512);
+
+        generator.generate(key);
+
+        assertEquals(64, readVariant(key, "64").getWidth());
+        assertEquals(256, readVariant(key, "256").getWidth());
+    }
+
+    @Test
+    void generate_WhenPictureIsNotAnImage_StoresNothing() throws IOException {
+        String key = store.save(new ByteArrayInputStream("not an image".getBytes()), Long.MAX_VALUE);
+
+        generator.generate(key);
+
+        assertNull(store.getVariant(key, "64"));
+    }
+
+    private String storeJpeg(int width, int height) throws IOException {
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return store.save(new ByteArrayInputStream(out.toByteArray()), Long.MAX_VALUE);
+    }
+
+    private BufferedImage readVariant(String key, String variant) throws IOException {
+        try (var in = store.getVariant(key, variant).content().getInputStream()) {
+            return ImageIO.read(in);
+        }
+    }
+}
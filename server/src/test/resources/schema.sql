@@ -12,3 +12,19 @@ CREATE TABLE IF NOT EXISTS links (
     user_email VARCHAR(255) NOT NULL,
     FOREIGN KEY (user_email) REFERENCES users(email)
 );
+
+CREATE TABLE IF NOT EXISTS click_rollup_minute (
+    user_email VARCHAR(255) NOT NULL,
+    link_url VARCHAR(2048) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_email, bucket, link_url)
+);
+
+CREATE TABLE IF NOT EXISTS click_rollup_hour (
+    user_email VARCHAR(255) NOT NULL,
+    link_url VARCHAR(2048) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    clicks BIGINT NOT NULL,
+    PRIMARY KEY (user_email, bucket, link_url)
+);